@@ -1,10 +1,17 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
 import java.awt.*;
-import java.time.Duration;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class AdminDashboard extends JPanel {
     
@@ -14,10 +21,22 @@ public class AdminDashboard extends JPanel {
     
     private CardLayout adminCards;
     private JPanel adminContentCards;
-    private DefaultTableModel recordsTableModel;
-    private JPanel availabilityListPanel;
+    private final BookingTableModel recordsTableModel = new BookingTableModel();
+    private final SlotGridModel slotGridModel = new SlotGridModel();
+    private JTable slotGrid;
+    private final ChargesBoardModel chargesModel = new ChargesBoardModel();
+    private JLabel chargesSummary;
+    private JLabel todaySummary;
+    private final OccupancyChart occupancyChart = new OccupancyChart();
+    private JLabel occupancySummary;
+    private final TopTableModel topVehicles = new TopTableModel("Vehicle");
+    private final TopTableModel topUsers = new TopTableModel("User");
+    private final TopTableModel topSlots = new TopTableModel("Slot");
+    private JLabel topSummary;
     
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int CHARGES_REFRESH_MS = 15_000;
+    private static final int TOP_PARKERS = 20;
     
     public AdminDashboard(JFrame parent, CardLayout mainCards, JPanel mainPanel) {
         this.parent = parent;
@@ -42,6 +61,8 @@ public class AdminDashboard extends JPanel {
         
         setupContentPanels();
         add(adminContentCards, BorderLayout.CENTER);
+        
+        DataModels.addChangeListener(this::onSlotsChanged);
     }
     
     private JPanel createHeader() {
@@ -79,7 +100,9 @@ public class AdminDashboard extends JPanel {
         String[] buttons = {
             "▣ Parking Availability", 
             "≡ User Records", 
-            "$ Cost Calculator", 
+            "$ Current Charges", 
+            "◔ Occupancy", 
+            "★ Top Parkers", 
             "+ Add Slot", 
             "✕ Clear All Bookings", 
             "← Logout"
@@ -92,7 +115,7 @@ public class AdminDashboard extends JPanel {
             sidebar.add(button);
             sidebar.add(Box.createRigidArea(new Dimension(0, 10)));
             
-            String action = buttonText.replaceAll("[▣≡$+✕←] ", "");
+            String action = buttonText.replaceAll("[▣≡$◔★+✕←] ", "");
             button.addActionListener(e -> handleSidebarAction(action));
         }
         
@@ -100,17 +123,41 @@ public class AdminDashboard extends JPanel {
     }
     
     private void setupContentPanels() {
-        availabilityListPanel = new JPanel();
-        availabilityListPanel.setBackground(UIComponents.BG_COLOR);
-        availabilityListPanel.setLayout(new BoxLayout(availabilityListPanel, BoxLayout.Y_AXIS));
-        availabilityListPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
-        JScrollPane availScroll = new JScrollPane(availabilityListPanel);
-        availScroll.setBorder(null);
+        // A JTable only renders the rows in view, so thousands of slots cost
+        // nothing until they are scrolled to.
+        slotGrid = new JTable(slotGridModel);
+        slotGrid.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        slotGrid.setRowHeight(44);
+        slotGrid.setFillsViewportHeight(true);
+        slotGrid.setShowVerticalLines(false);
+        slotGrid.setGridColor(new Color(229, 231, 235));
+        slotGrid.setSelectionBackground(new Color(224, 231, 255));
+        slotGrid.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 13));
+        slotGrid.getTableHeader().setBackground(new Color(243, 244, 246));
+        slotGrid.getTableHeader().setForeground(UIComponents.TEXT_PRIMARY);
+        slotGrid.getTableHeader().setReorderingAllowed(false);
+        slotGrid.getColumnModel().getColumn(SlotGridModel.STATUS).setCellRenderer(new StatusRenderer());
+        slotGrid.getColumnModel().getColumn(SlotGridModel.ACTION).setCellRenderer(new ActionRenderer());
+        slotGrid.getColumnModel().getColumn(SlotGridModel.ACTION).setMaxWidth(150);
+        slotGrid.getColumnModel().getColumn(SlotGridModel.ACTION).setMinWidth(150);
+        slotGrid.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = slotGrid.rowAtPoint(e.getPoint());
+                int column = slotGrid.columnAtPoint(e.getPoint());
+                if (row >= 0 && slotGrid.convertColumnIndexToModel(column) == SlotGridModel.ACTION) {
+                    handleSlotAction(slotGridModel.slotAt(slotGrid.convertRowIndexToModel(row)));
+                }
+            }
+        });
+        JScrollPane availScroll = new JScrollPane(slotGrid);
+        availScroll.setBorder(new EmptyBorder(20, 20, 20, 20));
         availScroll.getViewport().setBackground(UIComponents.BG_COLOR);
-        adminContentCards.add(availScroll, "availability");
+        JPanel availPanel = new JPanel(new BorderLayout());
+        availPanel.setBackground(UIComponents.BG_COLOR);
+        availPanel.add(availScroll, BorderLayout.CENTER);
+        adminContentCards.add(availPanel, "availability");
         
-        recordsTableModel = new DefaultTableModel(
-            new Object[]{"Slot", "User", "Vehicle", "In Time", "Out Time", "Cost"}, 0);
         JTable recordsTable = new JTable(recordsTableModel);
         recordsTable.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         recordsTable.setRowHeight(32);
@@ -126,7 +173,11 @@ public class AdminDashboard extends JPanel {
         tablePanel.add(tableScroll, BorderLayout.CENTER);
         adminContentCards.add(tablePanel, "records");
         
-        adminContentCards.add(createCostCalculatorPanel(), "calculator");
+        adminContentCards.add(createChargesPanel(), "charges");
+        
+        adminContentCards.add(createOccupancyPanel(), "occupancy");
+        
+        adminContentCards.add(createTopParkersPanel(), "top");
         
         adminContentCards.add(createAddSlotPanel(), "addslot");
     }
@@ -136,22 +187,40 @@ public class AdminDashboard extends JPanel {
             case "Parking Availability":
                 refreshAvailabilityPanel();
                 adminCards.show(adminContentCards, "availability");
+                AsyncData.refresh();
                 break;
             case "User Records":
                 refreshRecordsTable();
                 adminCards.show(adminContentCards, "records");
+                AsyncData.refresh();
+                break;
+            case "Current Charges":
+                refreshCharges();
+                adminCards.show(adminContentCards, "charges");
+                break;
+            case "Occupancy":
+                refreshOccupancy();
+                adminCards.show(adminContentCards, "occupancy");
                 break;
-            case "Cost Calculator":
-                adminCards.show(adminContentCards, "calculator");
+            case "Top Parkers":
+                refreshTopParkers();
+                adminCards.show(adminContentCards, "top");
+                AsyncData.refresh();
                 break;
             case "Add Slot":
                 adminCards.show(adminContentCards, "addslot");
                 break;
             case "Clear All Bookings":
-                DataModels.clearAllBookings();
-                refreshAvailabilityPanel();
-                refreshRecordsTable();
-                JOptionPane.showMessageDialog(parent, "Cleared all bookings.");
+                UIComponents.ProgressDialog clearing = 
+                    new UIComponents.ProgressDialog(parent, "Clearing all bookings...");
+                clearing.setVisible(true);
+                AsyncData.onEdt(AsyncData.clearAllBookings(), done -> {
+                    clearing.dispose();
+                    JOptionPane.showMessageDialog(parent, "Cleared all bookings.");
+                }, error -> {
+                    clearing.dispose();
+                    JOptionPane.showMessageDialog(parent, "Could not clear bookings: " + error.getMessage());
+                });
                 break;
             case "Logout":
                 DataModels.clearCurrentUser();
@@ -161,62 +230,33 @@ public class AdminDashboard extends JPanel {
     }
     
     public void refreshAvailabilityPanel() {
-        availabilityListPanel.removeAll();
-        
-        for (DataModels.ParkingSlot slot : DataModels.getSlots()) {
-            JPanel card = new JPanel(new BorderLayout());
-            card.setBackground(UIComponents.CARD_BG);
-            card.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(new Color(229, 231, 235), 1),
-                new EmptyBorder(18, 20, 18, 20)
-            ));
-            card.setMaximumSize(new Dimension(900, 90));
-            
-            JPanel leftPanel = new JPanel();
-            leftPanel.setLayout(new BoxLayout(leftPanel, BoxLayout.Y_AXIS));
-            leftPanel.setOpaque(false);
-            
-            JPanel slotHeader = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
-            slotHeader.setOpaque(false);
-            JLabel slotNum = new JLabel("Slot " + slot.id);
-            slotNum.setFont(new Font("Segoe UI", Font.BOLD, 16));
-            slotNum.setForeground(UIComponents.TEXT_PRIMARY);
-            slotHeader.add(slotNum);
-            
-            JLabel status = new JLabel(slot.available ? "● Available" : "● Occupied");
-            status.setFont(new Font("Segoe UI", Font.BOLD, 13));
-            status.setForeground(slot.available ? UIComponents.SECONDARY_COLOR : UIComponents.DANGER_COLOR);
-            slotHeader.add(status);
-            
-            leftPanel.add(slotHeader);
-            
-            if (!slot.available) {
-                JLabel details = new JLabel("User: " + slot.bookedBy + 
-                    " | Vehicle: " + slot.vehicle + " | Since: " + DF.format(slot.inTime));
-                details.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-                details.setForeground(UIComponents.TEXT_SECONDARY);
-                leftPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-                leftPanel.add(details);
+        slotGridModel.setSlots(DataModels.getSlots());
+    }
+    
+    private void onSlotsChanged(SlotEventBus.Change change) {
+        if (change.has(SlotEventBus.Kind.BOOKINGS_CLEARED) || change.has(SlotEventBus.Kind.BOOKING_RECORDED)) {
+            refreshRecordsTable();
+            if (topSummary.isShowing()) {
+                refreshTopParkers();
             }
-            
-            card.add(leftPanel, BorderLayout.CENTER);
-            
-            JPanel actions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
-            actions.setOpaque(false);
-            JButton toggle = new UIComponents.ModernButton(slot.available ? "Book" : "Free Slot", 
-                slot.available ? UIComponents.PRIMARY_COLOR : UIComponents.DANGER_COLOR);
-            toggle.setPreferredSize(new Dimension(120, 38));
-            actions.add(toggle);
-            
-            toggle.addActionListener(e -> handleSlotAction(slot));
-            
-            card.add(actions, BorderLayout.EAST);
-            availabilityListPanel.add(card);
-            availabilityListPanel.add(Box.createRigidArea(new Dimension(0, 12)));
         }
         
-        availabilityListPanel.revalidate();
-        availabilityListPanel.repaint();
+        int[] ids = change.slotIds();
+        if (ids.length > 0) {
+            // Claims and releases re-read only their own slots; new slots need the full list.
+            if (change.has(SlotEventBus.Kind.SLOT_ADDED)) {
+                slotGridModel.setSlots(DataModels.getSlots());
+            } else {
+                slotGridModel.update(ids);
+            }
+            chargesModel.slotsChanged(change);
+            if (chargesSummary.isShowing()) {
+                refreshCharges();
+            }
+            if (occupancyChart.isShowing()) {
+                refreshOccupancy();
+            }
+        }
     }
     
     private void handleSlotAction(DataModels.ParkingSlot slot) {
@@ -230,134 +270,218 @@ public class AdminDashboard extends JPanel {
             if (result == JOptionPane.OK_OPTION && 
                 !userField.getText().trim().isEmpty() && 
                 !vehicleField.getText().trim().isEmpty()) {
-                slot.available = false;
-                slot.bookedBy = userField.getText().trim();
-                slot.vehicle = vehicleField.getText().trim();
-                slot.inTime = LocalDateTime.now();
-                DataModels.updateSlot(slot);
-                refreshAvailabilityPanel();
-                JOptionPane.showMessageDialog(parent, 
-                    "Booked slot " + slot.id + " for user " + slot.bookedBy + ".");
+                String user = userField.getText().trim();
+                AsyncData.onEdt(AsyncData.claim(slot.id, user,
+                    vehicleField.getText().trim(), LocalDateTime.now()), booked -> {
+                    if (booked == BookingEngine.Result.CLAIMED) {
+                        JOptionPane.showMessageDialog(parent, 
+                            "Booked slot " + slot.id + " for user " + user + ".");
+                    } else {
+                        JOptionPane.showMessageDialog(parent, 
+                            "Slot " + slot.id + " could not be booked (" + booked + ").");
+                    }
+                });
             }
         } else {
             LocalDateTime outTime = LocalDateTime.now();
-            double cost = calculateCost(slot.inTime, outTime);
-            DataModels.addBooking(new DataModels.Booking(slot.id, slot.bookedBy, 
-                slot.vehicle, slot.inTime, outTime, cost));
-            slot.available = true;
-            slot.bookedBy = null;
-            slot.vehicle = null;
-            slot.inTime = null;
-            DataModels.updateSlot(slot);
-            refreshAvailabilityPanel();
-            refreshRecordsTable();
-            JOptionPane.showMessageDialog(parent, 
-                "Freed slot " + slot.id + ". Booking recorded. Cost ₹" + cost);
+            long cost = TariffEngine.cost(slot, outTime);
+            AsyncData.onEdt(AsyncData.release(slot, outTime, cost), freed -> {
+                if (freed == BookingEngine.Result.RELEASED) {
+                    JOptionPane.showMessageDialog(parent, 
+                        "Freed slot " + slot.id + ". Booking recorded. Cost " + Money.format(cost));
+                } else {
+                    JOptionPane.showMessageDialog(parent, 
+                        "Slot " + slot.id + " could not be freed (" + freed + ").");
+                }
+            });
         }
     }
     
-    private JPanel createCostCalculatorPanel() {
-        JPanel wrapper = new JPanel(new GridBagLayout());
-        wrapper.setBackground(UIComponents.BG_COLOR);
+    private JPanel createChargesPanel() {
+        JLabel summary = new JLabel(" ");
+        summary.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        summary.setForeground(UIComponents.TEXT_PRIMARY);
+        summary.setBorder(new EmptyBorder(20, 20, 0, 20));
+        
+        JLabel today = new JLabel(" ");
+        today.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        today.setForeground(UIComponents.TEXT_SECONDARY);
+        today.setBorder(new EmptyBorder(6, 20, 0, 20));
+        
+        JPanel header = new JPanel(new GridLayout(2, 1));
+        header.setOpaque(false);
+        header.add(summary);
+        header.add(today);
+        
+        JTable chargesTable = new JTable(chargesModel);
+        chargesTable.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        chargesTable.setRowHeight(32);
+        chargesTable.setFillsViewportHeight(true);
+        chargesTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 13));
+        chargesTable.getTableHeader().setBackground(new Color(243, 244, 246));
+        chargesTable.getTableHeader().setForeground(UIComponents.TEXT_PRIMARY);
+        chargesTable.getTableHeader().setReorderingAllowed(false);
+        chargesTable.setGridColor(new Color(229, 231, 235));
+        chargesTable.setSelectionBackground(new Color(224, 231, 255));
+        chargesTable.getColumnModel().getColumn(ChargesBoardModel.OVERSTAY).setCellRenderer(new OverstayRenderer());
+        JScrollPane scroll = new JScrollPane(chargesTable);
+        scroll.setBorder(new EmptyBorder(20, 20, 20, 20));
+        scroll.getViewport().setBackground(UIComponents.BG_COLOR);
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(UIComponents.BG_COLOR);
+        panel.add(header, BorderLayout.NORTH);
+        panel.add(scroll, BorderLayout.CENTER);
+        
+        // Charges move with the clock, so the board reprices on a timer as well as on slot changes.
+        chargesSummary = summary;
+        todaySummary = today;
+        new Timer(CHARGES_REFRESH_MS, e -> {
+            if (panel.isShowing()) {
+                refreshCharges();
+            }
+        }).start();
+        return panel;
+    }
+    
+    private void refreshCharges() {
+        chargesModel.refresh(LocalDateTime.now());
+        chargesSummary.setText(DataModels.occupiedSlots() + " of " + DataModels.totalSlots() + " occupied   ·   surge "
+            + TariffEngine.surgeLabel(TariffEngine.surgeNow()) + "   ·   running total "
+            + Money.format(chargesModel.totalPaise()) + "   ·   " + chargesModel.overstayCount() + " overstaying");
+        refreshToday();
+    }
+    
+    /** Today's closed bookings per the daily rollups, which stay a handful of rows however long the history. */
+    private void refreshToday() {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        AsyncData.onEdt(AsyncData.submit(() -> DatabaseManager.fetchRollups(true, today, today.plusDays(1))), rollups -> {
+            if (rollups == null) {
+                todaySummary.setText("Today: totals unavailable");
+                return;
+            }
+            long revenue = 0;
+            long bookings = 0;
+            long dwell = 0;
+            StringBuilder peaks = new StringBuilder();
+            for (ParkingStorage.Rollup r : rollups) {
+                revenue += r.revenuePaise;
+                bookings += r.bookings;
+                dwell += r.dwellMinutes;
+                peaks.append(peaks.length() == 0 ? "" : ", ").append(r.slotGroup).append(' ').append(r.peakOccupied);
+            }
+            long average = bookings == 0 ? 0 : dwell / bookings;
+            todaySummary.setText("Today: " + Money.format(revenue) + " from " + bookings + " bookings   ·   average stay "
+                + average / 60 + "h " + (average % 60 < 10 ? "0" : "") + average % 60 + "m"
+                + (peaks.length() == 0 ? "" : "   ·   peak " + peaks));
+        });
+    }
+    
+    private JPanel createOccupancyPanel() {
+        occupancySummary = new JLabel(" ");
+        occupancySummary.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        occupancySummary.setForeground(UIComponents.TEXT_PRIMARY);
+        
+        JPanel spans = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        spans.setOpaque(false);
+        String[] labels = {"24 hours", "7 days", "90 days", "1 year"};
+        long[] days = {1, 7, 90, 365};
+        for (int i = 0; i < labels.length; i++) {
+            long span = days[i] * OccupancySeries.Tier.DAY.millis;
+            JButton button = new UIComponents.ModernButton(labels[i], UIComponents.PRIMARY_COLOR);
+            button.setPreferredSize(new Dimension(110, 36));
+            button.addActionListener(e -> {
+                occupancyChart.setSpan(span);
+                refreshOccupancy();
+            });
+            spans.add(button);
+        }
         
-        JPanel card = new JPanel(new GridBagLayout());
-        card.setBackground(UIComponents.CARD_BG);
-        card.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(229, 231, 235), 1),
-            new EmptyBorder(30, 30, 30, 30)
+        JPanel header = new JPanel(new BorderLayout());
+        header.setOpaque(false);
+        header.setBorder(new EmptyBorder(20, 20, 10, 20));
+        header.add(occupancySummary, BorderLayout.WEST);
+        header.add(spans, BorderLayout.EAST);
+        
+        JPanel chart = new JPanel(new BorderLayout());
+        chart.setBackground(UIComponents.CARD_BG);
+        chart.setBorder(BorderFactory.createCompoundBorder(
+            new EmptyBorder(0, 20, 20, 20),
+            BorderFactory.createLineBorder(new Color(229, 231, 235), 1)
         ));
+        chart.add(occupancyChart, BorderLayout.CENTER);
         
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.insets = new Insets(12, 12, 12, 12);
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        
-        JLabel title = new JLabel("$ Cost Calculator");
-        title.setFont(new Font("Segoe UI", Font.BOLD, 22));
-        title.setForeground(UIComponents.TEXT_PRIMARY);
-        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
-        card.add(title, gbc);
-        
-        gbc.gridy++;
-        card.add(Box.createRigidArea(new Dimension(0, 15)), gbc);
-        
-        gbc.gridwidth = 1;
-        gbc.gridy++;
-        JLabel slotLabel = new JLabel("Select slot:");
-        slotLabel.setFont(new Font("Segoe UI", Font.BOLD, 13));
-        slotLabel.setForeground(UIComponents.TEXT_PRIMARY);
-        card.add(slotLabel, gbc);
-        
-        JComboBox<String> slotCombo = new JComboBox<>();
-        slotCombo.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        slotCombo.setPreferredSize(new Dimension(300, 38));
-        gbc.gridx = 1;
-        card.add(slotCombo, gbc);
-        
-        gbc.gridx = 0; gbc.gridy++;
-        JLabel timeLabel = new JLabel("In Time (if occupied):");
-        timeLabel.setFont(new Font("Segoe UI", Font.BOLD, 13));
-        timeLabel.setForeground(UIComponents.TEXT_PRIMARY);
-        card.add(timeLabel, gbc);
-        
-        JLabel inTimeLabel = new JLabel("-");
-        inTimeLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        inTimeLabel.setForeground(UIComponents.TEXT_SECONDARY);
-        gbc.gridx = 1;
-        card.add(inTimeLabel, gbc);
-        
-        gbc.gridx = 0; gbc.gridy++; gbc.gridwidth = 2;
-        card.add(Box.createRigidArea(new Dimension(0, 10)), gbc);
-        
-        gbc.gridy++;
-        JButton calcNow = new UIComponents.ModernButton("Calculate Cost", UIComponents.PRIMARY_COLOR);
-        calcNow.setPreferredSize(new Dimension(300, 42));
-        card.add(calcNow, gbc);
-        
-        gbc.gridy++;
-        card.add(Box.createRigidArea(new Dimension(0, 15)), gbc);
-        
-        gbc.gridy++;
-        JLabel result = new JLabel("Cost: ₹0.00");
-        result.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        result.setForeground(UIComponents.PRIMARY_COLOR);
-        card.add(result, gbc);
-        
-        slotCombo.removeAllItems();
-        for (DataModels.ParkingSlot s : DataModels.getSlots()) {
-            slotCombo.addItem("Slot " + s.id);
-        }
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(UIComponents.BG_COLOR);
+        panel.add(header, BorderLayout.NORTH);
+        panel.add(chart, BorderLayout.CENTER);
         
-        slotCombo.addActionListener(e -> {
-            int id = slotCombo.getSelectedIndex();
-            if (id >= 0 && id < DataModels.getSlots().size()) {
-                DataModels.ParkingSlot s = DataModels.getSlots().get(id);
-                if (!s.available) {
-                    inTimeLabel.setText(DF.format(s.inTime));
-                } else {
-                    inTimeLabel.setText("N/A");
-                }
-                result.setText("Cost: ₹0.00");
+        // The chart's current bucket fills as time passes, not only when slots change.
+        new Timer(CHARGES_REFRESH_MS, e -> {
+            if (panel.isShowing()) {
+                refreshOccupancy();
             }
-        });
-        
-        calcNow.addActionListener(e -> {
-            int id = slotCombo.getSelectedIndex();
-            if (id >= 0 && id < DataModels.getSlots().size()) {
-                DataModels.ParkingSlot s = DataModels.getSlots().get(id);
-                if (s.available) {
-                    JOptionPane.showMessageDialog(parent, 
-                        "Slot is available (no active in-time).");
-                    result.setText("Cost: ₹0.00");
-                } else {
-                    double cost = calculateCost(s.inTime, LocalDateTime.now());
-                    result.setText(String.format("Cost: ₹%.2f (from %s to now)", 
-                        cost, DF.format(s.inTime)));
-                }
+        }).start();
+        return panel;
+    }
+    
+    private void refreshOccupancy() {
+        occupancyChart.reload();
+        OccupancySeries.Point busiest = null;
+        long occupied = 0;
+        long covered = 0;
+        for (OccupancySeries.Point p : occupancyChart.points()) {
+            if (busiest == null || p.max * (long) Math.max(1, busiest.total) > busiest.max * (long) Math.max(1, p.total)) {
+                busiest = p;
             }
-        });
+            if (p.total > 0) {
+                occupied += p.occupiedMillis * 100 / p.total;
+                covered += p.coveredMillis;
+            }
+        }
+        occupancySummary.setText(busiest == null ? "No occupancy recorded yet"
+            : "Average " + (covered == 0 ? 0 : occupied / covered) + "% occupied   ·   peak " + busiest.max + " of "
+                + busiest.total + " slots around " + DF.format(DataModels.fromEpochMillis(busiest.bucket)));
+    }
+    
+    private JPanel createTopParkersPanel() {
+        topSummary = new JLabel(" ");
+        topSummary.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        topSummary.setForeground(UIComponents.TEXT_PRIMARY);
+        topSummary.setBorder(new EmptyBorder(20, 20, 0, 20));
+        
+        JPanel tables = new JPanel(new GridLayout(1, 3, 20, 0));
+        tables.setOpaque(false);
+        tables.setBorder(new EmptyBorder(20, 20, 20, 20));
+        for (TopTableModel model : new TopTableModel[] {topVehicles, topUsers, topSlots}) {
+            JTable table = new JTable(model);
+            table.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            table.setRowHeight(32);
+            table.setFillsViewportHeight(true);
+            table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 13));
+            table.getTableHeader().setBackground(new Color(243, 244, 246));
+            table.getTableHeader().setForeground(UIComponents.TEXT_PRIMARY);
+            table.getTableHeader().setReorderingAllowed(false);
+            table.setGridColor(new Color(229, 231, 235));
+            table.setSelectionBackground(new Color(224, 231, 255));
+            tables.add(new JScrollPane(table));
+        }
         
-        wrapper.add(card);
-        return wrapper;
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(UIComponents.BG_COLOR);
+        panel.add(topSummary, BorderLayout.NORTH);
+        panel.add(tables, BorderLayout.CENTER);
+        return panel;
+    }
+    
+    /** Reads the fixed-size summaries DataModels keeps as bookings arrive, never the history itself. */
+    private void refreshTopParkers() {
+        topVehicles.setEntries(DataModels.frequentVehicles().top(TOP_PARKERS));
+        topUsers.setEntries(DataModels.frequentUsers().top(TOP_PARKERS));
+        topSlots.setEntries(DataModels.frequentSlots().top(TOP_PARKERS));
+        long total = DataModels.frequentVehicles().total();
+        topSummary.setText(String.format("Most frequent of %,d bookings   ·   counts are upper bounds, "
+            + "exact unless a margin is shown", total));
     }
     
     private JPanel createAddSlotPanel() {
@@ -413,12 +537,19 @@ public class AdminDashboard extends JPanel {
             try {
                 int n = Integer.parseInt(numField.getText().trim());
                 if (n <= 0) throw new NumberFormatException();
-                int start = DataModels.getSlots().size() + 1;
-                for (int i = 0; i < n; i++) {
-                    DataModels.addSlot(start + i);
-                }
-                JOptionPane.showMessageDialog(parent, "Added " + n + " slots.");
-                refreshAvailabilityPanel();
+                UIComponents.ProgressDialog adding = 
+                    new UIComponents.ProgressDialog(parent, "Adding " + n + " slots...");
+                adding.setVisible(true);
+                addBtn.setEnabled(false);
+                AsyncData.onEdt(AsyncData.addSlots(n, adding::setProgress), added -> {
+                    adding.dispose();
+                    addBtn.setEnabled(true);
+                    JOptionPane.showMessageDialog(parent, "Added " + added + " slots.");
+                }, error -> {
+                    adding.dispose();
+                    addBtn.setEnabled(true);
+                    JOptionPane.showMessageDialog(parent, "Could not add slots: " + error.getMessage());
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(parent, 
                     "Enter a valid positive integer.");
@@ -430,24 +561,194 @@ public class AdminDashboard extends JPanel {
     }
     
     public void refreshRecordsTable() {
-        recordsTableModel.setRowCount(0);
-        for (DataModels.Booking booking : DataModels.getBookings()) {
-            recordsTableModel.addRow(new Object[]{
-                booking.slotId, 
-                booking.user, 
-                booking.vehicle, 
-                DF.format(booking.inTime), 
-                DF.format(booking.outTime), 
-                "₹" + String.format("%.2f", booking.cost)
-            });
+        recordsTableModel.reload();
+    }
+    
+    /**
+     * Rows of the availability grid, backed by a slot snapshot. Cells are
+     * computed when a row is painted; updates repaint only the changed rows.
+     */
+    private static class SlotGridModel extends AbstractTableModel {
+        static final int SLOT = 0;
+        static final int STATUS = 1;
+        static final int USER = 2;
+        static final int VEHICLE = 3;
+        static final int SINCE = 4;
+        static final int ACTION = 5;
+        
+        private static final String[] COLUMNS = {"Slot", "Status", "User", "Vehicle", "Since", ""};
+        
+        private List<DataModels.ParkingSlot> slots = new ArrayList<>();
+        
+        void setSlots(List<DataModels.ParkingSlot> slots) {
+            this.slots = new ArrayList<>(slots);
+            fireTableDataChanged();
+        }
+        
+        /** Re-reads only {@code changedIds} from the cache and repaints their rows. */
+        void update(int[] changedIds) {
+            for (int id : changedIds) {
+                int row = rowOf(id);
+                DataModels.ParkingSlot slot = row >= 0 ? DataModels.getSlotById(id) : null;
+                if (slot != null) {
+                    slots.set(row, slot);
+                    fireTableRowsUpdated(row, row);
+                }
+            }
+        }
+        
+        DataModels.ParkingSlot slotAt(int row) {
+            return slots.get(row);
+        }
+        
+        /** Binary search over the id-ordered snapshot. */
+        private int rowOf(int id) {
+            int low = 0;
+            int high = slots.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midId = slots.get(mid).id;
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+        
+        @Override
+        public int getRowCount() {
+            return slots.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            DataModels.ParkingSlot slot = slots.get(row);
+            switch (column) {
+                case SLOT:
+                    return "Slot " + slot.id;
+                case STATUS:
+                    return slot.available;
+                case USER:
+                    return slot.available ? "" : slot.bookedBy;
+                case VEHICLE:
+                    return slot.available ? "" : slot.vehicle;
+                case SINCE:
+                    return slot.available || slot.inTime == null ? "" : DF.format(slot.inTime);
+                default:
+                    return slot.available ? "Book" : "Free Slot";
+            }
         }
     }
     
-    private double calculateCost(LocalDateTime in, LocalDateTime out) {
-        if (in == null || out == null) return 0;
-        Duration duration = Duration.between(in, out);
-        double hours = duration.toMinutes() / 60.0;
-        return Math.ceil(hours) * UIComponents.RATE_PER_HOUR;
+    /** One {@link HeavyHitters} summary, most frequent first. */
+    private static class TopTableModel extends AbstractTableModel {
+        private final String[] columns;
+        private List<? extends HeavyHitters.Entry<?>> entries = Collections.emptyList();
+        
+        TopTableModel(String keyColumn) {
+            columns = new String[] {"#", keyColumn, "Bookings"};
+        }
+        
+        void setEntries(List<? extends HeavyHitters.Entry<?>> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+        
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            HeavyHitters.Entry<?> entry = entries.get(row);
+            switch (column) {
+                case 0:
+                    return row + 1;
+                case 1:
+                    return entry.key instanceof Integer ? "Slot " + entry.key : entry.key;
+                default:
+                    return entry.error == 0 ? String.format("%,d", entry.count)
+                        : String.format("%,d (≤ %,d over)", entry.count, entry.error);
+            }
+        }
+    }
+    
+    private static class StatusRenderer extends DefaultTableCellRenderer {
+        private static final Font FONT = new Font("Segoe UI", Font.BOLD, 13);
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            boolean available = Boolean.TRUE.equals(value);
+            super.getTableCellRendererComponent(table, available ? "● Available" : "● Occupied",
+                isSelected, hasFocus, row, column);
+            setFont(FONT);
+            setForeground(available ? UIComponents.SECONDARY_COLOR : UIComponents.DANGER_COLOR);
+            return this;
+        }
+    }
+    
+    private static class OverstayRenderer extends DefaultTableCellRenderer {
+        private static final Font FONT = new Font("Segoe UI", Font.BOLD, 13);
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            boolean overstay = Boolean.TRUE.equals(value);
+            super.getTableCellRendererComponent(table, overstay ? "⚠ Overstay" : "",
+                isSelected, hasFocus, row, column);
+            setFont(FONT);
+            setForeground(UIComponents.WARNING_COLOR);
+            return this;
+        }
+    }
+    
+    /** Paints a single shared button for every visible row; clicks are handled by the table. */
+    private static class ActionRenderer implements TableCellRenderer {
+        private final JPanel cell = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 4));
+        private final UIComponents.ModernButton book = 
+            new UIComponents.ModernButton("Book", UIComponents.PRIMARY_COLOR);
+        private final UIComponents.ModernButton free = 
+            new UIComponents.ModernButton("Free Slot", UIComponents.DANGER_COLOR);
+        
+        ActionRenderer() {
+            book.setPreferredSize(new Dimension(120, 34));
+            free.setPreferredSize(new Dimension(120, 34));
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            cell.removeAll();
+            cell.add("Book".equals(value) ? book : free);
+            cell.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+            return cell;
+        }
     }
     
     public void refreshPanels() {
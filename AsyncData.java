@@ -0,0 +1,112 @@
+import javax.swing.SwingUtilities;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs database work on a single background thread so the Swing event
+ * dispatch thread never waits for SQLite. Every call returns a future; use
+ * {@link #onEdt} to handle the result back on the event dispatch thread.
+ */
+public final class AsyncData {
+
+    private static final int PROGRESS_STEP = 100;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "parking-data");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private AsyncData() {
+    }
+
+    public static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, executor);
+    }
+
+    public static CompletableFuture<Void> run(Runnable work) {
+        return CompletableFuture.runAsync(work, executor);
+    }
+
+    public static CompletableFuture<Void> refresh() {
+        return run(DataModels::refresh);
+    }
+
+    public static CompletableFuture<BookingEngine.Result> claim(int slotId, String user, String vehicle,
+                                                                LocalDateTime inTime) {
+        return submit(() -> BookingEngine.claim(slotId, user, vehicle, inTime));
+    }
+
+    public static CompletableFuture<BookingEngine.Result> release(DataModels.ParkingSlot occupied,
+                                                                  LocalDateTime outTime, long costPaise) {
+        return submit(() -> BookingEngine.release(occupied, outTime, costPaise));
+    }
+
+    public static CompletableFuture<Void> clearAllBookings() {
+        return run(DataModels::clearAllBookings);
+    }
+
+    /**
+     * Adds {@code count} slots after the highest existing id and commits them.
+     * {@code progress} receives (done, total) on the event dispatch thread.
+     */
+    public static CompletableFuture<Integer> addSlots(int count, BiConsumer<Integer, Integer> progress) {
+        return submit(() -> {
+            List<DataModels.ParkingSlot> slots = DataModels.getSlots();
+            int start = slots.isEmpty() ? 1 : slots.get(slots.size() - 1).id + 1;
+            for (int i = 0; i < count; i++) {
+                if (!DataModels.addSlot(start + i, i == count - 1)) {
+                    throw new IllegalStateException("The new slots could not be saved; they will be retried");
+                }
+                if (progress != null && (i + 1) % PROGRESS_STEP == 0) {
+                    int done = i + 1;
+                    SwingUtilities.invokeLater(() -> progress.accept(done, count));
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Delivers the outcome of {@code future} on the event dispatch thread.
+     * Failures are unwrapped from {@link CompletionException} before being passed on.
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                onSuccess.accept(result);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+            if (onFailure != null) {
+                onFailure.accept(cause);
+            } else {
+                System.err.println("Background data task failed: " + cause);
+            }
+        }));
+    }
+
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<T> onSuccess) {
+        onEdt(future, onSuccess, null);
+    }
+
+    /** Lets queued work finish (bounded wait) before the database is closed. */
+    public static void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
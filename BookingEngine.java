@@ -0,0 +1,161 @@
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Claims and releases slots with compare-and-set semantics. Each slot has an
+ * atomic in-process state so concurrent callers in this JVM fail fast, and
+ * the database write is conditional on the slot still being in the expected
+ * state so terminals sharing one database file cannot double-book a bay.
+ *
+ * States are ints in pages of {@link AtomicIntegerArray} indexed by slot id,
+ * four bytes per bay; pages are only ever added, so growing never copies a
+ * state out from under a concurrent compare-and-set.
+ */
+public final class BookingEngine {
+
+    public enum Result {
+        CLAIMED,
+        RELEASED,
+        /** Someone else got there first; re-read the slot and try again. */
+        CONFLICT,
+        NOT_FOUND,
+        /** The database write failed; nothing was changed. */
+        FAILED
+    }
+
+    private static final int FREE = 0;
+    private static final int OCCUPIED = 1;
+    private static final int PENDING = 2;
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private static volatile AtomicIntegerArray[] pages = new AtomicIntegerArray[0];
+
+    private BookingEngine() {
+    }
+
+    /** Records the last known state of a slot; called by DataModels whenever its cache changes. */
+    static void observe(int slotId, boolean available) {
+        AtomicIntegerArray page = page(slotId);
+        int i = slotId & PAGE_MASK;
+        int current = page.get(i);
+        if (current != PENDING) {
+            page.compareAndSet(i, current, available ? FREE : OCCUPIED);
+        }
+    }
+
+    /**
+     * Occupies the slot if it is free. The cached state is trusted up front
+     * and the database write is conditional, so a stale cache only costs a
+     * CONFLICT, after which the cache has been re-read for the retry.
+     */
+    public static Result claim(int slotId, String user, String vehicle, LocalDateTime inTime) {
+        DataModels.ParkingSlot slot = DataModels.getSlotById(slotId);
+        if (slot == null) {
+            return Result.NOT_FOUND;
+        }
+        AtomicIntegerArray page = page(slotId);
+        int i = slotId & PAGE_MASK;
+        if (!slot.available) {
+            // Possibly freed by another terminal since the last sync.
+            DataModels.refresh();
+            return Result.CONFLICT;
+        }
+        if (!page.compareAndSet(i, FREE, PENDING)) {
+            return Result.CONFLICT;
+        }
+
+        slot.available = false;
+        slot.bookedBy = user;
+        slot.vehicle = vehicle;
+        slot.inTime = inTime;
+        slot.surgePercent = TariffEngine.surgeNow();
+
+        if (!DataModels.flush()) {
+            // A queued write to this slot could otherwise land after the claim.
+            page.set(i, FREE);
+            return Result.FAILED;
+        }
+        int updated = DatabaseManager.claimSlot(slot);
+        if (updated < 0) {
+            page.set(i, FREE);
+            return Result.FAILED;
+        }
+        if (updated == 0) {
+            return conflict(slotId, page);
+        }
+
+        page.set(i, OCCUPIED);
+        DataModels.applySlot(slot);
+        return Result.CLAIMED;
+    }
+
+    /**
+     * Frees {@code occupied} and records the finished booking, provided the
+     * slot is still held by the same user and vehicle.
+     */
+    public static Result release(DataModels.ParkingSlot occupied, LocalDateTime outTime, long costPaise) {
+        AtomicIntegerArray page = page(occupied.id);
+        int i = occupied.id & PAGE_MASK;
+        if (occupied.available || !page.compareAndSet(i, OCCUPIED, PENDING)) {
+            return Result.CONFLICT;
+        }
+
+        DataModels.Booking booking = new DataModels.Booking(occupied.id, occupied.bookedBy,
+            occupied.vehicle, occupied.inTime, outTime, costPaise);
+        booking.surgePercent = occupied.surgePercent;
+
+        if (!DataModels.flush()) {
+            page.set(i, OCCUPIED);
+            return Result.FAILED;
+        }
+        int updated = DatabaseManager.releaseSlot(occupied, booking);
+        if (updated < 0) {
+            page.set(i, OCCUPIED);
+            return Result.FAILED;
+        }
+        if (updated == 0) {
+            return conflict(occupied.id, page);
+        }
+
+        DataModels.ParkingSlot freed = new DataModels.ParkingSlot(occupied.id);
+        page.set(i, FREE);
+        DataModels.applySlot(freed);
+        DataModels.applyBooking(booking);
+        return Result.RELEASED;
+    }
+
+    /** Re-reads the database after a lost conditional write and leaves the slot in the state found there. */
+    private static Result conflict(int slotId, AtomicIntegerArray page) {
+        DataModels.refresh();
+        DataModels.ParkingSlot current = DataModels.getSlotById(slotId);
+        page.set(slotId & PAGE_MASK, current == null || !current.available ? OCCUPIED : FREE);
+        return Result.CONFLICT;
+    }
+
+    /** The page holding {@code slotId}'s state, adding pages up to it if needed. */
+    private static AtomicIntegerArray page(int slotId) {
+        if (slotId < 0) {
+            throw new IllegalArgumentException("Slot id must not be negative: " + slotId);
+        }
+        int p = slotId >>> PAGE_BITS;
+        AtomicIntegerArray[] current = pages;
+        if (p < current.length) {
+            return current[p];
+        }
+        synchronized (BookingEngine.class) {
+            current = pages;
+            if (p >= current.length) {
+                AtomicIntegerArray[] grown = Arrays.copyOf(current, p + 1);
+                for (int n = current.length; n < grown.length; n++) {
+                    grown[n] = new AtomicIntegerArray(1 << PAGE_BITS);
+                }
+                pages = grown;
+                current = grown;
+            }
+            return current[p];
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Booking history for the admin records table, newest first. Rows are
+ * fetched a page at a time on the data thread when the table first paints
+ * them, and only the most recently used pages are kept. Consecutive pages
+ * are read with keyset queries on {@code bookings.id}; cells are formatted
+ * as they are painted.
+ */
+public class BookingTableModel extends AbstractTableModel {
+
+    static final int PAGE_SIZE = 200;
+    static final int MAX_CACHED_PAGES = 25;
+
+    private static final String[] COLUMNS = {"Slot", "User", "Vehicle", "In Time", "Out Time", "Cost"};
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final Map<Integer, List<DataModels.Booking>> pages =
+        new LinkedHashMap<Integer, List<DataModels.Booking>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<DataModels.Booking>> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+    // Id of the last (oldest) booking on each page seen so far; the next page starts below it.
+    private final Map<Integer, Long> pageEnds = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private int rowCount = 0;
+    // Bumped on reload so pages fetched for an older history are dropped.
+    private int generation = 0;
+
+    /** Re-counts the history and drops every cached page. */
+    public void reload() {
+        int gen = ++generation;
+        AsyncData.onEdt(AsyncData.submit(BookingTableModel::count), count -> {
+            if (gen != generation) {
+                return;
+            }
+            rowCount = count;
+            pages.clear();
+            pageEnds.clear();
+            loading.clear();
+            fireTableDataChanged();
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        List<DataModels.Booking> rows = pages.get(page);
+        if (rows == null) {
+            loadPage(page);
+            return column == 0 ? "…" : "";
+        }
+        int index = row % PAGE_SIZE;
+        if (index >= rows.size()) {
+            return "";
+        }
+        DataModels.Booking booking = rows.get(index);
+        switch (column) {
+            case 0:
+                return booking.slotId;
+            case 1:
+                return booking.user;
+            case 2:
+                return booking.vehicle;
+            case 3:
+                return DF.format(booking.inTime);
+            case 4:
+                return DF.format(booking.outTime);
+            default:
+                return Money.format(booking.costPaise);
+        }
+    }
+
+    private void loadPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        int gen = generation;
+        Long before = page == 0 ? Long.valueOf(Long.MAX_VALUE) : pageEnds.get(page - 1);
+        AsyncData.onEdt(AsyncData.submit(() -> fetch(page, before)), rows -> {
+            if (gen != generation) {
+                return;
+            }
+            loading.remove(page);
+            if (rows == null) {
+                return;
+            }
+            pages.put(page, rows);
+            if (!rows.isEmpty()) {
+                pageEnds.put(page, rows.get(rows.size() - 1).id);
+            }
+            int first = page * PAGE_SIZE;
+            int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+            if (last >= first) {
+                fireTableRowsUpdated(first, last);
+            }
+        });
+    }
+
+    private static int count() {
+        DataModels.flush();
+        return DatabaseManager.countBookings();
+    }
+
+    private static List<DataModels.Booking> fetch(int page, Long before) {
+        return before != null
+            ? DatabaseManager.fetchBookingsBefore(before, PAGE_SIZE)
+            : DatabaseManager.fetchBookingsAt(page * PAGE_SIZE, PAGE_SIZE);
+    }
+}
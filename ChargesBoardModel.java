@@ -0,0 +1,215 @@
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Running charges for every occupied slot, for the admin "Current Charges"
+ * board. The rows are read from the slot snapshot once, and again only when
+ * slots are added; after that {@link #slotsChanged} re-reads just the slots
+ * that were claimed or released. {@link #refresh} prices a row again only
+ * once {@link TariffEngine#nextChange} says its charge can have moved, and
+ * only rows whose cells changed are repainted.
+ *
+ * A stay longer than -Dparking.overstayHours (default 24) is flagged.
+ */
+public class ChargesBoardModel extends AbstractTableModel {
+
+    static final int OVERSTAY = 5;
+
+    private static final long OVERSTAY_MINUTES = Long.getLong("parking.overstayHours", 24L) * 60;
+    private static final String[] COLUMNS = {"Slot", "User", "Vehicle", "In Time", "Duration", "Overstay", "Surge", "Charge"};
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final class Row {
+        final int slotId;
+        final String user;
+        final String vehicle;
+        final LocalDateTime inTime;
+        final long inMillis;
+        final int surgePercent;
+        long costPaise;
+        long repriceAt = Long.MIN_VALUE;
+        long minutes = -1;
+
+        Row(DataModels.ParkingSlot slot) {
+            slotId = slot.id;
+            user = slot.bookedBy;
+            vehicle = slot.vehicle;
+            inTime = slot.inTime;
+            inMillis = DataModels.toEpochMillis(slot.inTime);
+            surgePercent = slot.surgePercent;
+        }
+
+        boolean isStayOf(DataModels.ParkingSlot slot) {
+            return slot.id == slotId && slot.inTime.equals(inTime) && slot.surgePercent == surgePercent
+                && Objects.equals(slot.bookedBy, user) && Objects.equals(slot.vehicle, vehicle);
+        }
+    }
+
+    private List<Row> rows = new ArrayList<>();
+    private boolean stale = true;
+    private TariffEngine pricedWith;
+    private long totalPaise;
+    private int overstays;
+
+    /** Brings every row up to {@code now}; call on the event dispatch thread. */
+    public void refresh(LocalDateTime now) {
+        long nowMillis = DataModels.toEpochMillis(now);
+        TariffEngine tariff = TariffEngine.current();
+        boolean repriceAll = tariff != pricedWith;
+        pricedWith = tariff;
+
+        boolean rebuilt = stale;
+        if (rebuilt) {
+            rows = merge(rows, DataModels.getSlots());
+            stale = false;
+        }
+
+        long total = 0;
+        int over = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            boolean changed = false;
+            if (repriceAll || nowMillis >= row.repriceAt) {
+                long cost = TariffEngine.surged(
+                    tariff.priceType(tariff.typeOf(row.slotId), row.inMillis, nowMillis), row.surgePercent);
+                changed = cost != row.costPaise;
+                row.costPaise = cost;
+                row.repriceAt = tariff.nextChange(row.inMillis, nowMillis);
+            }
+            long minutes = Math.max(0, (nowMillis - row.inMillis) / 60_000L);
+            if (minutes != row.minutes) {
+                row.minutes = minutes;
+                changed = true;
+            }
+            total += row.costPaise;
+            if (minutes > OVERSTAY_MINUTES) {
+                over++;
+            }
+            if (changed && !rebuilt) {
+                fireTableRowsUpdated(i, i);
+            }
+        }
+        totalPaise = total;
+        overstays = over;
+        if (rebuilt) {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Brings the rows of the changed slots up to date; call on the event
+     * dispatch thread. New slots make the next {@link #refresh} reload.
+     */
+    public void slotsChanged(SlotEventBus.Change change) {
+        if (stale || change.has(SlotEventBus.Kind.SLOT_ADDED)) {
+            stale = true;
+            return;
+        }
+        for (int id : change.slotIds()) {
+            DataModels.ParkingSlot slot = DataModels.getSlotById(id);
+            boolean parked = slot != null && !slot.available && slot.inTime != null;
+            int at = rowOf(id);
+            if (at >= 0 && parked && rows.get(at).isStayOf(slot)) {
+                continue;
+            }
+            if (at >= 0 && parked) {
+                rows.set(at, new Row(slot));
+                fireTableRowsUpdated(at, at);
+            } else if (at >= 0) {
+                rows.remove(at);
+                fireTableRowsDeleted(at, at);
+            } else if (parked) {
+                at = -at - 1;
+                rows.add(at, new Row(slot));
+                fireTableRowsInserted(at, at);
+            }
+        }
+    }
+
+    /** The row of {@code slotId}, or -(insertion point) - 1 if it has none. */
+    private int rowOf(int slotId) {
+        int low = 0;
+        int high = rows.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = rows.get(mid).slotId;
+            if (midId < slotId) {
+                low = mid + 1;
+            } else if (midId > slotId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    /** Sum of the running charges as of the last refresh. */
+    public long totalPaise() {
+        return totalPaise;
+    }
+
+    public int overstayCount() {
+        return overstays;
+    }
+
+    /** Occupied slots of {@code slots}, both in id order, reusing the rows of stays already in {@code old}. */
+    private static List<Row> merge(List<Row> old, List<DataModels.ParkingSlot> slots) {
+        List<Row> merged = new ArrayList<>();
+        int j = 0;
+        for (DataModels.ParkingSlot slot : slots) {
+            if (slot.available || slot.inTime == null) continue;
+            while (j < old.size() && old.get(j).slotId < slot.id) {
+                j++;
+            }
+            if (j < old.size() && old.get(j).isStayOf(slot)) {
+                merged.add(old.get(j));
+            } else {
+                merged.add(new Row(slot));
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Row r = rows.get(row);
+        switch (column) {
+            case 0:
+                return "Slot " + r.slotId;
+            case 1:
+                return r.user;
+            case 2:
+                return r.vehicle;
+            case 3:
+                return DF.format(r.inTime);
+            case 4:
+                return r.minutes / 60 + "h " + (r.minutes % 60 < 10 ? "0" : "") + r.minutes % 60 + "m";
+            case OVERSTAY:
+                return r.minutes > OVERSTAY_MINUTES;
+            case 6:
+                return TariffEngine.surgeLabel(r.surgePercent);
+            default:
+                return Money.format(r.costPaise);
+        }
+    }
+}
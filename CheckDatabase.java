@@ -49,10 +49,11 @@ public class CheckDatabase {
                     int slotId = rs.getInt("slot_id");
                     String user = rs.getString("user");
                     String vehicle = rs.getString("vehicle");
-                    double cost = rs.getDouble("cost");
+                    // Schema version 2 keeps paise in cost_paise; version 0 files keep rupees in cost.
+                    long cost = hasColumn(rs, "cost_paise") ? rs.getLong("cost_paise") : Money.ofRupees(rs.getDouble("cost"));
                     
-                    System.out.printf("Slot %d - User: %s, Vehicle: %s, Cost: ₹%.2f\n", 
-                        slotId, user, vehicle, cost);
+                    System.out.printf("Slot %d - User: %s, Vehicle: %s, Cost: %s\n", 
+                        slotId, user, vehicle, Money.format(cost));
                 }
                 System.out.println("Total bookings: " + count);
             }
@@ -62,4 +63,14 @@ public class CheckDatabase {
             e.printStackTrace();
         }
     }
+
+    private static boolean hasColumn(ResultSet rs, String column) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (column.equalsIgnoreCase(meta.getColumnName(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
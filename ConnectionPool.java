@@ -0,0 +1,199 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived SQLite connections: one writer and a few readers, each keeping
+ * its prepared statements for the lifetime of the process.
+ */
+public final class ConnectionPool {
+
+    private static final long BUSY_TIMEOUT_MS = 5000;
+
+    private final BlockingQueue<PooledConnection> writer = new ArrayBlockingQueue<>(1);
+    private final BlockingQueue<PooledConnection> readers;
+    private final List<PooledConnection> all = new ArrayList<>();
+
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, int readerCount) throws SQLException {
+        readers = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+        try {
+            PooledConnection w = open(url);
+            try (Statement stmt = w.connection.createStatement()) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+            }
+            writer.add(w);
+            for (int i = 0; i < Math.max(1, readerCount); i++) {
+                readers.add(open(url));
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private PooledConnection open(String url) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+        }
+        PooledConnection pc = new PooledConnection(conn);
+        all.add(pc);
+        return pc;
+    }
+
+    /** Leases the single writer connection; use for anything that modifies the database. */
+    public Lease write() throws SQLException {
+        return new Lease(acquire(writer), writer);
+    }
+
+    /** Leases one of the reader connections. */
+    public Lease read() throws SQLException {
+        return new Lease(acquire(readers), readers);
+    }
+
+    private PooledConnection acquire(BlockingQueue<PooledConnection> queue) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        leases.incrementAndGet();
+        PooledConnection pc = queue.poll();
+        if (pc != null) {
+            return pc;
+        }
+        waits.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            pc = queue.poll(BUSY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+        if (pc == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+        return pc;
+    }
+
+    public Stats getStats() {
+        return new Stats(leases.get(), waits.get(), waitNanos.get(),
+            statementHits.get(), statementMisses.get());
+    }
+
+    public synchronized void close() {
+        closed = true;
+        for (PooledConnection pc : all) {
+            for (PreparedStatement ps : pc.statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            pc.statements.clear();
+            try {
+                pc.connection.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close database connection: " + e.getMessage());
+            }
+        }
+        all.clear();
+    }
+
+    public final class Lease implements AutoCloseable {
+        private PooledConnection pc;
+        private final BlockingQueue<PooledConnection> home;
+
+        private Lease(PooledConnection pc, BlockingQueue<PooledConnection> home) {
+            this.pc = pc;
+            this.home = home;
+        }
+
+        public Connection connection() {
+            return pc.connection;
+        }
+
+        /**
+         * Returns the cached statement for {@code sql}, preparing it on first use.
+         * The statement belongs to the pool: close its result sets, never the statement.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = pc.statements.get(sql);
+            if (ps != null) {
+                statementHits.incrementAndGet();
+                ps.clearParameters();
+                return ps;
+            }
+            statementMisses.incrementAndGet();
+            ps = pc.connection.prepareStatement(sql);
+            pc.statements.put(sql, ps);
+            return ps;
+        }
+
+        @Override
+        public void close() {
+            if (pc == null) {
+                return;
+            }
+            try {
+                if (!pc.connection.getAutoCommit()) {
+                    pc.connection.rollback();
+                    pc.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.err.println("Failed to reset database connection: " + e.getMessage());
+            }
+            home.offer(pc);
+            pc = null;
+        }
+    }
+
+    public static final class Stats {
+        public final long leases;
+        public final long waits;
+        public final long waitNanos;
+        public final long statementHits;
+        public final long statementMisses;
+
+        Stats(long leases, long waits, long waitNanos, long statementHits, long statementMisses) {
+            this.leases = leases;
+            this.waits = waits;
+            this.waitNanos = waitNanos;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("leases=%d waits=%d waitMs=%.1f statementHits=%d statementMisses=%d",
+                leases, waits, waitNanos / 1_000_000.0, statementHits, statementMisses);
+        }
+    }
+
+    private static final class PooledConnection {
+        final Connection connection;
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
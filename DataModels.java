@@ -1,6 +1,12 @@
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DataModels {
 
@@ -10,6 +16,8 @@ public class DataModels {
         public LocalDateTime inTime = null;
         public String bookedBy = null;
         public String vehicle = null;
+        /** Surge rate locked in when the slot was claimed; see {@link TariffEngine#surgeNow}. */
+        public int surgePercent = 100;
 
         public ParkingSlot(int id) {
             this.id = id;
@@ -17,115 +25,289 @@ public class DataModels {
     }
 
     public static class Booking {
+        /** Database row id, or 0 while the booking has not been written yet. */
+        public long id;
         public int slotId;
         public String user;
         public String vehicle;
         public LocalDateTime inTime;
         public LocalDateTime outTime;
-        public double cost;
+        /** See {@link Money}. */
+        public long costPaise;
+        /** Percent of the tariff the stay was charged at; above 100 under surge pricing. */
+        public int surgePercent = 100;
 
         public Booking(int slotId, String user, String vehicle,
-                       LocalDateTime inTime, LocalDateTime outTime, double cost) {
+                       LocalDateTime inTime, LocalDateTime outTime, long costPaise) {
             this.slotId = slotId;
             this.user = user;
             this.vehicle = vehicle;
             this.inTime = inTime;
             this.outTime = outTime;
-            this.cost = cost;
+            this.costPaise = costPaise;
         }
     }
 
-    private static final List<ParkingSlot> slots = new ArrayList<>();
-    private static final List<Booking> bookings = new ArrayList<>();
+    // -Dparking.slotStore=primitive keeps slot state in primitive arrays for very large lots.
+    private static final SlotStore slots = "primitive".equals(System.getProperty("parking.slotStore"))
+        ? new PrimitiveSlotStore()
+        : new ObjectSlotStore();
+    private static final SlotAllocator freeSlots = new SlotAllocator();
+    private static final Map<String, Integer> occupants = new HashMap<>();
+    private static final SlotEventBus events = new SlotEventBus();
+    // Slot count in the high 32 bits and occupied slots in the low 32, so a
+    // single read gives a matching pair without taking the DataModels lock.
+    private static final AtomicLong occupancy = new AtomicLong();
+
+    // Approximate most frequent vehicles, users and slots across the booking
+    // history: the history up to a full load is streamed in by seedFrequent and
+    // newer bookings are counted as they are synced; fixed size however long
+    // the history grows (-Dparking.topCapacity counters each).
+    private static final int TOP_CAPACITY = Integer.getInteger("parking.topCapacity", 1024);
+    private static final int SEED_CHUNK = 10_000;
+    private static final HeavyHitters<String> frequentVehicles = new HeavyHitters<>(TOP_CAPACITY);
+    private static final HeavyHitters<String> frequentUsers = new HeavyHitters<>(TOP_CAPACITY);
+    private static final HeavyHitters<Integer> frequentSlots = new HeavyHitters<>(TOP_CAPACITY);
+    // Bumped whenever the summaries are cleared, so a seeding pass over an
+    // older history stops instead of adding to the new one.
+    private static long frequentGeneration = 0;
+
+    // Opened on first use, so tools that only borrow the time helpers leave the file alone.
+    private static final class Series {
+        static final OccupancySeries INSTANCE = OccupancySeries.openDefault();
+    }
+
+    private static final WriteBehindQueue writeBehind = new WriteBehindQueue(
+        WriteBehindQueue.DEFAULT_MAX_BATCH, WriteBehindQueue.DEFAULT_MAX_DELAY_MS);
+
+    // Position in the database change log / booking ids that the cache reflects.
+    // Bookings are not cached: a full load skips the history and later syncs
+    // only pass on bookings newer than syncedBookingId.
+    private static long syncedVersion = -1;
+    private static long syncedBookingId = -1;
+    private static long syncedEpoch = 0;
+
+    // Bumped on every cache change; the snapshot is rebuilt lazily when it moves.
+    private static long slotsVersion = 0;
+    private static volatile Snapshot<ParkingSlot> slotSnapshot = new Snapshot<>(-1, Collections.emptyList());
+
+    /**
+     * An immutable, versioned view of the slots. Readers can keep
+     * and share it without copying; a change publishes a new snapshot with a
+     * higher version instead of touching this one.
+     */
+    public static final class Snapshot<T> {
+        public final long version;
+        public final List<T> items;
+
+        Snapshot(long version, List<T> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
 
     private static String currentUser = null;
     private static String currentVehicle = null;
 
+    // Getters only read the in-memory cache and are safe to call from the event
+    // dispatch thread. Anything that talks to the database (refresh, writes with
+    // sync, clearAllBookings) belongs on a background thread; see AsyncData.
+
     public static void initializeSlots(int numberOfSlots) {
         DatabaseManager.ensureMinimumSlots(numberOfSlots);
-        reloadSlots();
-        
-        if (slots.isEmpty()) {
-            for (int i = 1; i <= numberOfSlots; i++) {
-                slots.add(new ParkingSlot(i));
-            }
-        }
-        
-        reloadBookings();
+        sync();
+        Series.INSTANCE.start();
     }
 
+    /**
+     * Times are stored as wall-clock epoch milliseconds: the local date-time
+     * read as if it were UTC, so the value round-trips exactly and decoding
+     * is plain arithmetic.
+     */
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    public static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+            (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /** Listeners are called on the event dispatch thread with coalesced changes. */
+    public static void addChangeListener(SlotEventBus.Listener listener) {
+        events.addListener(listener);
+    }
+
+    public static void removeChangeListener(SlotEventBus.Listener listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * Brings the cache up to date with the database, including changes made by
+     * other terminals; listeners hear about anything new.
+     */
+    public static void refresh() {
+        sync();
+    }
+
+    /**
+     * All slots in id order; the list is a shared, read-only snapshot. It is
+     * rebuilt on the first call after any change, so code reacting to change
+     * events should re-read only the changed ids with {@link #getSlotById}.
+     */
     public static List<ParkingSlot> getSlots() {
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadSlots();
-        }
-        return new ArrayList<>(slots);
+        return getSlotSnapshot().items;
     }
 
-    public static List<Booking> getBookings() {
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadBookings();
+    public static synchronized Snapshot<ParkingSlot> getSlotSnapshot() {
+        Snapshot<ParkingSlot> current = slotSnapshot;
+        if (current.version != slotsVersion) {
+            current = new Snapshot<>(slotsVersion, Collections.unmodifiableList(slots.toList()));
+            slotSnapshot = current;
         }
-        return new ArrayList<>(bookings);
+        return current;
     }
 
-    public static ParkingSlot getSlotById(int id) {
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadSlots();
-        }
-        for (ParkingSlot slot : slots) {
-            if (slot.id == id) {
-                return cloneSlot(slot);
-            }
-        }
-        return null;
+    public static synchronized ParkingSlot getSlotById(int id) {
+        ParkingSlot slot = slots.get(id);
+        return slot == null ? null : cloneSlot(slot);
+    }
+
+    /** Lowest-numbered free slot, or -1 if the lot is full. */
+    public static synchronized int nextFreeSlotId() {
+        return freeSlots.nextFree();
+    }
+
+    public static synchronized int countFreeSlots() {
+        return freeSlots.countFree();
+    }
+
+    /** Occupied slots, kept as slots change; never scans the lot. */
+    public static int occupiedSlots() {
+        return (int) occupancy.get();
+    }
+
+    public static int totalSlots() {
+        return (int) (occupancy.get() >>> 32);
+    }
+
+    /** Occupancy over time, recorded on every claim and release and once a minute. */
+    public static OccupancySeries occupancySeries() {
+        return Series.INSTANCE;
+    }
+
+    public static HeavyHitters<String> frequentVehicles() {
+        return frequentVehicles;
+    }
+
+    public static HeavyHitters<String> frequentUsers() {
+        return frequentUsers;
+    }
+
+    public static HeavyHitters<Integer> frequentSlots() {
+        return frequentSlots;
+    }
+
+    /** Share of the lot that is occupied, 0 to 100, rounded down; 0 for an empty lot. */
+    public static int occupancyPercent() {
+        long counts = occupancy.get();
+        long total = counts >>> 32;
+        return total == 0 ? 0 : (int) ((counts & 0xFFFFFFFFL) * 100 / total);
+    }
+
+    /** Ids of all free slots in ascending order. */
+    public static synchronized int[] getFreeSlotIds() {
+        return freeSlots.freeIds();
     }
 
     public static boolean updateSlot(ParkingSlot slot) {
+        return updateSlot(slot, false);
+    }
+
+    /**
+     * Applies {@code slot} to the cache and queues it for the database. With
+     * {@code sync} the call returns only after the write has been committed.
+     */
+    public static boolean updateSlot(ParkingSlot slot, boolean sync) {
         if (slot == null) {
             return false;
         }
-        DatabaseManager.updateSlot(slot);
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadSlots();
+        ParkingSlot copy = cloneSlot(slot);
+        synchronized (DataModels.class) {
+            putSlot(copy);
         }
-        return true;
+        writeBehind.enqueueSlot(copy);
+        return !sync || writeBehind.flush();
     }
 
     public static void addSlot(int id) {
-        DatabaseManager.insertSlot(id);
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadSlots();
-        } else {
-            slots.add(new ParkingSlot(id));
+        addSlot(id, false);
+    }
+
+    /** Returns false if {@code sync} was asked for and the write failed; it stays queued. */
+    public static boolean addSlot(int id, boolean sync) {
+        writeBehind.enqueueSlotInsert(id);
+        boolean written = !sync || writeBehind.flush();
+        synchronized (DataModels.class) {
+            putSlot(new ParkingSlot(id));
         }
+        return written;
     }
 
     public static void addBooking(Booking booking) {
+        addBooking(booking, false);
+    }
+
+    /** Returns false if {@code sync} was asked for and the write failed; it stays queued. */
+    public static boolean addBooking(Booking booking, boolean sync) {
         if (booking == null) {
-            return;
+            return false;
         }
-        DatabaseManager.insertBooking(booking);
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadBookings();
-        } else {
-            bookings.add(booking);
+        truncateTimes(booking);
+        writeBehind.enqueueBooking(booking);
+        boolean written = !sync || writeBehind.flush();
+        applyBooking(booking);
+        return written;
+    }
+
+    /** Puts a slot state that is already in the database into the cache. */
+    static synchronized void applySlot(ParkingSlot slot) {
+        putSlot(cloneSlot(slot));
+    }
+
+    /** Tells listeners about a booking that is already in the database. */
+    static void applyBooking(Booking booking) {
+        truncateTimes(booking);
+        events.publish(SlotEventBus.Kind.BOOKING_RECORDED, booking.slotId);
+    }
+
+    /** Commits every queued write; false if that failed and the writes are still queued. */
+    public static boolean flush() {
+        return writeBehind.flush();
+    }
+
+    /**
+     * Durably writes out anything still queued and closes the database.
+     * Returns false if some writes could not be saved; the queue reports them.
+     */
+    public static boolean shutdown() {
+        synchronized (DataModels.class) {
+            // Stops a seeding pass before the database goes away under it.
+            frequentGeneration++;
         }
+        boolean saved = writeBehind.shutdown();
+        DatabaseManager.shutdown();
+        Series.INSTANCE.close();
+        return saved;
     }
 
     public static void clearAllBookings() {
-        DatabaseManager.resetSlotsAndBookings();
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadSlots();
-            reloadBookings();
-        } else {
-            for (ParkingSlot s : slots) {
-                s.available = true;
-                s.bookedBy = null;
-                s.vehicle = null;
-                s.inTime = null;
-            }
-            bookings.clear();
+        if (!writeBehind.flush()) {
+            // Queued bookings would otherwise be written after the reset and reappear.
+            throw new IllegalStateException("Queued changes could not be saved, so nothing was cleared");
         }
+        DatabaseManager.resetSlotsAndBookings();
+        sync();
     }
 
     public static String getCurrentUser() {
@@ -146,37 +328,197 @@ public class DataModels {
         currentVehicle = null;
     }
 
-    public static ParkingSlot findUserBooking(String user, String vehicle) {
+    public static synchronized ParkingSlot findUserBooking(String user, String vehicle) {
         if (user == null || vehicle == null) {
             return null;
         }
-        if (DatabaseManager.isDatabaseAvailable()) {
-            reloadSlots();
+        String key = occupantKey(user, vehicle);
+        Integer id = occupants.get(key);
+        if (id == null) {
+            return null;
+        }
+        ParkingSlot slot = slots.get(id);
+        if (slot.available || !user.equals(slot.bookedBy) || !vehicle.equals(slot.vehicle)) {
+            // The cached slot was changed in place; drop the stale entry.
+            occupants.remove(key);
+            return null;
+        }
+        return cloneSlot(slot);
+    }
+
+    /**
+     * Reads the slots and bookings that changed since the last sync. The
+     * database is read without holding the cache lock, so readers on the
+     * event dispatch thread never wait for I/O.
+     */
+    private static void sync() {
+        writeBehind.flush();
+        long epoch = DatabaseManager.storageEpoch();
+        long sinceVersion;
+        long afterBookingId;
+        synchronized (DataModels.class) {
+            if (epoch != syncedEpoch) {
+                // The backend was replaced (a spool handed over to SQLite); start from scratch.
+                syncedEpoch = epoch;
+                syncedVersion = -1;
+                syncedBookingId = -1;
+            }
+            sinceVersion = syncedVersion;
+            afterBookingId = syncedBookingId;
+        }
+        ParkingStorage.ChangeSet changes =
+            DatabaseManager.fetchChangesSince(sinceVersion, afterBookingId);
+        if (changes != null && DatabaseManager.storageEpoch() == epoch) {
+            applyChanges(sinceVersion, afterBookingId, changes);
+        }
+    }
+
+    private static synchronized void applyChanges(long sinceVersion, long afterBookingId,
+                                                  ParkingStorage.ChangeSet changes) {
+        if (syncedVersion != sinceVersion || syncedBookingId != afterBookingId) {
+            // Another thread applied a sync while this one was reading; its result is at least as new.
+            return;
+        }
+
+        if (syncedVersion < 0) {
+            slots.clear();
+            slotsVersion++;
+            freeSlots.clear();
+            occupancy.set(0);
+            occupants.clear();
+            clearFrequent();
+            seedFrequent(changes.lastBookingId);
+            // Views of the history read it from the database; have them start over.
+            events.publish(SlotEventBus.Kind.BOOKINGS_CLEARED, -1);
+        }
+        for (ParkingSlot slot : changes.slots) {
+            putSlot(slot);
+        }
+
+        if (changes.bookingsReset) {
+            clearFrequent();
+            events.publish(SlotEventBus.Kind.BOOKINGS_CLEARED, -1);
         }
-        for (ParkingSlot slot : slots) {
-            if (!slot.available && user.equals(slot.bookedBy) && vehicle.equals(slot.vehicle)) {
-                return slot;
+        for (Booking booking : changes.bookings) {
+            // Only saved bookings come through here, so each is counted once.
+            frequentVehicles.offer(booking.vehicle);
+            frequentUsers.offer(booking.user);
+            frequentSlots.offer(booking.slotId);
+            events.publish(SlotEventBus.Kind.BOOKING_RECORDED, booking.slotId);
+        }
+
+        syncedVersion = changes.version;
+        syncedBookingId = changes.lastBookingId;
+    }
+
+    private static void clearFrequent() {
+        frequentVehicles.clear();
+        frequentUsers.clear();
+        frequentSlots.clear();
+        frequentGeneration++;
+    }
+
+    /**
+     * Counts the bookings up to {@code throughId}, which a full load skipped,
+     * into the frequency summaries on a background thread. The history is
+     * streamed in chunks and none of it is kept; later bookings arrive by sync.
+     */
+    private static void seedFrequent(long throughId) {
+        if (throughId <= 0) {
+            return;
+        }
+        long generation = frequentGeneration;
+        Thread seeder = new Thread(() -> seedFrequent(generation, throughId), "parking-top-seed");
+        seeder.setDaemon(true);
+        seeder.start();
+    }
+
+    private static void seedFrequent(long generation, long throughId) {
+        ParkingStorage.BookingChunk chunk = new ParkingStorage.BookingChunk(SEED_CHUNK, true);
+        LocalDateTime from = LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(9999, 1, 1, 0, 0);
+        long afterId = 0;
+        do {
+            boolean read = DatabaseManager.fetchBookingChunk(from, to, afterId, chunk);
+            synchronized (DataModels.class) {
+                if (generation != frequentGeneration) {
+                    return;
+                }
+                if (!read) {
+                    System.err.println("WARNING: Could not read past bookings; top parkers only count new ones.");
+                    return;
+                }
+                for (int i = 0; i < chunk.size && chunk.ids[i] <= throughId; i++) {
+                    frequentVehicles.offer(chunk.vehicles[i]);
+                    frequentUsers.offer(chunk.users[i]);
+                    frequentSlots.offer(chunk.slotIds[i]);
+                }
+            }
+            if (chunk.size > 0) {
+                afterId = chunk.ids[chunk.size - 1];
             }
+        } while (chunk.size == chunk.capacity() && afterId < throughId);
+    }
+
+    private static void putSlot(ParkingSlot slot) {
+        freeSlots.setFree(slot.id, slot.available);
+        BookingEngine.observe(slot.id, slot.available);
+        ParkingSlot old = slots.get(slot.id);
+        if (old != null && !old.available && old.bookedBy != null && old.vehicle != null) {
+            occupants.remove(occupantKey(old.bookedBy, old.vehicle), old.id);
+        }
+        if (!slot.available && slot.bookedBy != null && slot.vehicle != null) {
+            occupants.put(occupantKey(slot.bookedBy, slot.vehicle), slot.id);
+        }
+        slots.put(slot);
+        slotsVersion++;
+        if (old == null) {
+            occupancy.addAndGet((1L << 32) + (slot.available ? 0 : 1));
+        } else if (old.available != slot.available) {
+            long counts = occupancy.addAndGet(slot.available ? -1 : 1);
+            Series.INSTANCE.record(toEpochMillis(LocalDateTime.now()), (int) counts, (int) (counts >>> 32));
+        }
+
+        if (old == null) {
+            events.publish(SlotEventBus.Kind.SLOT_ADDED, slot.id);
+        } else if (sameState(old, slot)) {
+            return;
+        } else if (!slot.available) {
+            events.publish(SlotEventBus.Kind.SLOT_CLAIMED, slot.id);
+        } else if (!old.available) {
+            events.publish(SlotEventBus.Kind.SLOT_RELEASED, slot.id);
         }
-        return null;
     }
 
-    private static void reloadSlots() {
-        slots.clear();
-        slots.addAll(DatabaseManager.fetchAllSlots());
+    private static boolean sameState(ParkingSlot a, ParkingSlot b) {
+        return a.available == b.available
+            && Objects.equals(a.bookedBy, b.bookedBy)
+            && Objects.equals(a.vehicle, b.vehicle)
+            && Objects.equals(a.inTime, b.inTime)
+            && a.surgePercent == b.surgePercent;
     }
 
-    private static void reloadBookings() {
-        bookings.clear();
-        bookings.addAll(DatabaseManager.fetchAllBookings());
+    private static String occupantKey(String user, String vehicle) {
+        return user + '\u0000' + vehicle;
     }
 
     private static ParkingSlot cloneSlot(ParkingSlot slot) {
         ParkingSlot copy = new ParkingSlot(slot.id);
         copy.available = slot.available;
-        copy.inTime = slot.inTime;
+        copy.inTime = truncate(slot.inTime);
         copy.bookedBy = slot.bookedBy;
         copy.vehicle = slot.vehicle;
+        copy.surgePercent = slot.surgePercent;
         return copy;
     }
+
+    // The database keeps times to the millisecond; the cache does too so re-reads compare equal.
+    private static LocalDateTime truncate(LocalDateTime time) {
+        return time == null ? null : time.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static void truncateTimes(Booking booking) {
+        booking.inTime = truncate(booking.inTime);
+        booking.outTime = truncate(booking.outTime);
+    }
 }
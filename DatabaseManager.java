@@ -1,243 +1,250 @@
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Types;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * Static entry point to the configured {@link ParkingStorage}. The backend is
+ * chosen once, from -Dparking.storage:
+ * <ul>
+ *   <li>{@code sqlite} (default): parking_system.db, shared by every terminal</li>
+ *   <li>{@code memory}: nothing is persisted; for simulations and benchmarks</li>
+ *   <li>{@code journal}: an append-only file (-Dparking.journal, default
+ *       parking_system.journal) for a single kiosk</li>
+ * </ul>
+ * If SQLite cannot be opened, changes go to a {@link SpoolStorage} file
+ * (-Dparking.spool, default parking_system.spool) and a background thread
+ * keeps retrying the database; once it opens, the spool is copied into it
+ * and replaces the backend. Any other backend that cannot be opened falls
+ * back to the in-memory one.
+ */
 public final class DatabaseManager {
     private static final String DB_URL = "jdbc:sqlite:parking_system.db";
-    private static final DateTimeFormatter DF = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-    private static boolean databaseAvailable = false;
+    private static final String DEFAULT_JOURNAL = "parking_system.journal";
+    private static final String DEFAULT_SPOOL = "parking_system.spool";
+    private static final long SPOOL_RETRY_MS = Long.getLong("parking.spool.retryMs", 5000L);
+    private static final long SPOOL_MAX_RETRY_MS = 60_000L;
 
-    static {
-        initializeDatabase();
-    }
+    // Bumped whenever the backend is replaced; see storageEpoch().
+    private static volatile long epoch = 0;
+    private static volatile ParkingStorage storage = openStorage(System.getProperty("parking.storage", "sqlite"));
 
     private DatabaseManager() {
     }
 
-    private static void initializeDatabase() {
-        try {
-            Class.forName("org.sqlite.JDBC");
-        } catch (ClassNotFoundException e) {
-            System.err.println("WARNING: SQLite JDBC driver not found. Running in memory-only mode.");
-            databaseAvailable = false;
-            return;
+    private static ParkingStorage openStorage(String kind) {
+        switch (kind) {
+            case "memory":
+                return new MemoryStorage();
+            case "journal":
+                String journal = System.getProperty("parking.journal", DEFAULT_JOURNAL);
+                try {
+                    return JournalStorage.open(Paths.get(journal));
+                } catch (IOException e) {
+                    System.err.println("WARNING: Failed to open journal " + journal + ". Running in memory-only mode.");
+                    System.err.println("Error: " + e.getMessage());
+                    return new MemoryStorage();
+                }
+            case "sqlite":
+                SqliteStorage sqlite = SqliteStorage.open(DB_URL);
+                return sqlite != null ? drainLeftoverSpool(sqlite) : openSpool();
+            default:
+                System.err.println("WARNING: Unknown storage '" + kind + "'. Running in memory-only mode.");
+                return new MemoryStorage();
         }
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-
-            stmt.executeUpdate(
-                "CREATE TABLE IF NOT EXISTS parking_slots (" +
-                    "id INTEGER PRIMARY KEY," +
-                    "available INTEGER NOT NULL DEFAULT 1," +
-                    "booked_by TEXT," +
-                    "vehicle TEXT," +
-                    "in_time TEXT" +
-                ")");
-
-            stmt.executeUpdate(
-                "CREATE TABLE IF NOT EXISTS bookings (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "slot_id INTEGER NOT NULL," +
-                    "user TEXT NOT NULL," +
-                    "vehicle TEXT NOT NULL," +
-                    "in_time TEXT NOT NULL," +
-                    "out_time TEXT NOT NULL," +
-                    "cost REAL NOT NULL," +
-                    "FOREIGN KEY(slot_id) REFERENCES parking_slots(id)" +
-                ")");
-            
-            databaseAvailable = true;
-            System.out.println("Database initialized successfully!");
-        } catch (SQLException e) {
-            System.err.println("WARNING: Failed to initialize database. Running in memory-only mode.");
+    /** Starts spooling changes locally and retries the database in the background. */
+    private static ParkingStorage openSpool() {
+        String spoolPath = System.getProperty("parking.spool", DEFAULT_SPOOL);
+        SpoolStorage spool;
+        try {
+            spool = SpoolStorage.open(Paths.get(spoolPath));
+        } catch (IOException e) {
+            System.err.println("WARNING: Failed to open spool " + spoolPath + ". Running in memory-only mode.");
             System.err.println("Error: " + e.getMessage());
-            databaseAvailable = false;
+            return new MemoryStorage();
         }
-    }
-    
-    public static boolean isDatabaseAvailable() {
-        return databaseAvailable;
+        System.err.println("WARNING: Spooling changes to " + spoolPath + " until the database is available.");
+        Thread drainer = new Thread(() -> retryDatabase(spool), "parking-spool");
+        drainer.setDaemon(true);
+        drainer.start();
+        return spool;
     }
 
-    public static void ensureMinimumSlots(int minimumSlots) {
-        if (!databaseAvailable) return;
-        
-        int existingSlots = countSlots();
-        if (existingSlots >= minimumSlots) {
-            return;
+    /** Copies a spool left by an earlier outage into the database that just opened. */
+    private static ParkingStorage drainLeftoverSpool(SqliteStorage sqlite) {
+        Path spoolPath = Paths.get(System.getProperty("parking.spool", DEFAULT_SPOOL));
+        if (!Files.exists(spoolPath)) {
+            return sqlite;
         }
-
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            conn.setAutoCommit(false);
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "INSERT OR IGNORE INTO parking_slots(id, available) VALUES(?, 1)")) {
-                for (int id = existingSlots + 1; id <= minimumSlots; id++) {
-                    ps.setInt(1, id);
-                    ps.executeUpdate();
-                }
+        try {
+            SpoolStorage spool = SpoolStorage.open(spoolPath);
+            if (!spool.drainTo(sqlite, () -> { })) {
+                System.err.println("WARNING: Could not copy spool " + spoolPath + " into the database; it is kept for the next start.");
+                spool.close();
             }
-            conn.commit();
-        } catch (SQLException e) {
-            System.err.println("Failed to ensure minimum slots: " + e.getMessage());
+        } catch (IOException e) {
+            // Most likely another terminal is still spooling into it; it drains its own spool.
+            System.err.println("Skipping spool " + spoolPath + ": " + e.getMessage());
         }
+        return sqlite;
     }
 
-    public static List<DataModels.ParkingSlot> fetchAllSlots() {
-        List<DataModels.ParkingSlot> slots = new ArrayList<>();
-        if (!databaseAvailable) return slots;
-        
-        String sql = "SELECT id, available, booked_by, vehicle, in_time FROM parking_slots ORDER BY id";
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                DataModels.ParkingSlot slot = new DataModels.ParkingSlot(rs.getInt("id"));
-                slot.available = rs.getInt("available") == 1;
-                slot.bookedBy = rs.getString("booked_by");
-                slot.vehicle = rs.getString("vehicle");
-
-                String inTime = rs.getString("in_time");
-                slot.inTime = (inTime == null || inTime.isEmpty())
-                    ? null
-                    : LocalDateTime.parse(inTime, DF);
-                slots.add(slot);
+    private static void retryDatabase(SpoolStorage spool) {
+        long delay = SPOOL_RETRY_MS;
+        while (storage == spool) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            SqliteStorage sqlite = SqliteStorage.open(DB_URL);
+            if (sqlite == null) {
+                delay = Math.min(delay * 2, SPOOL_MAX_RETRY_MS);
+                continue;
+            }
+            if (spool.drainTo(sqlite, () -> {
+                storage = sqlite;
+                epoch++;
+            })) {
+                System.out.println("Database available again; spooled changes written to " + DB_URL);
+                return;
             }
-        } catch (SQLException e) {
-            System.err.println("Failed to fetch parking slots: " + e.getMessage());
+            sqlite.close();
         }
+    }
+
+    public static ParkingStorage storage() {
+        return storage;
+    }
+
+    /** True if changes outlive the process (SQLite, journal or spool). */
+    public static boolean isDatabaseAvailable() {
+        return storage.getClass() != MemoryStorage.class;
+    }
+
+    /**
+     * Changes when the backend is replaced, e.g. once a spool hands over to
+     * SQLite. Change versions and booking ids from before then mean nothing
+     * to the new backend, so a cache keyed on them has to reload.
+     */
+    public static long storageEpoch() {
+        return epoch;
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return storage instanceof SqliteStorage ? ((SqliteStorage) storage).getPoolStats() : null;
+    }
+
+    public static synchronized void shutdown() {
+        storage.close();
+    }
+
+    public static void ensureMinimumSlots(int minimumSlots) {
+        storage.ensureMinimumSlots(minimumSlots);
+    }
+
+    public static List<DataModels.ParkingSlot> fetchAllSlots() {
+        return storage.fetchAllSlots();
+    }
 
-        return slots;
+    public static ParkingStorage.ChangeSet fetchChangesSince(long sinceVersion, long afterBookingId) {
+        return storage.fetchChangesSince(sinceVersion, afterBookingId);
+    }
+
+    public static DataModels.ParkingSlot fetchSlotByOccupant(String user, String vehicle) {
+        return storage.fetchSlotByOccupant(user, vehicle);
     }
 
     public static void insertSlot(int id) {
-        if (!databaseAvailable) return;
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(
-                 "INSERT INTO parking_slots(id, available) VALUES(?, 1)")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Failed to insert parking slot: " + e.getMessage());
-        }
+        storage.insertSlot(id);
     }
 
     public static void updateSlot(DataModels.ParkingSlot slot) {
-        if (!databaseAvailable) return;
-        String sql = "UPDATE parking_slots SET available = ?, booked_by = ?, vehicle = ?, in_time = ? WHERE id = ?";
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        storage.updateSlot(slot);
+    }
 
-            ps.setInt(1, slot.available ? 1 : 0);
+    // The conditional writes below retry once if they failed because the
+    // backend was replaced (and the old one closed) while they ran.
 
-            if (slot.bookedBy == null) {
-                ps.setNull(2, Types.VARCHAR);
-            } else {
-                ps.setString(2, slot.bookedBy);
-            }
+    public static int claimSlot(DataModels.ParkingSlot slot) {
+        ParkingStorage current = storage;
+        int result = current.claimSlot(slot);
+        return result < 0 && current != storage ? storage.claimSlot(slot) : result;
+    }
 
-            if (slot.vehicle == null) {
-                ps.setNull(3, Types.VARCHAR);
-            } else {
-                ps.setString(3, slot.vehicle);
-            }
+    public static int releaseSlot(DataModels.ParkingSlot occupied, DataModels.Booking booking) {
+        ParkingStorage current = storage;
+        int result = current.releaseSlot(occupied, booking);
+        return result < 0 && current != storage ? storage.releaseSlot(occupied, booking) : result;
+    }
 
-            if (slot.inTime == null) {
-                ps.setNull(4, Types.VARCHAR);
-            } else {
-                ps.setString(4, DF.format(slot.inTime));
-            }
+    public static boolean applyBatch(Collection<Integer> newSlotIds,
+                                     Collection<DataModels.ParkingSlot> slots,
+                                     Collection<DataModels.Booking> bookings) {
+        ParkingStorage current = storage;
+        boolean committed = current.applyBatch(false, newSlotIds, slots, bookings);
+        return committed || current == storage ? committed : storage.applyBatch(false, newSlotIds, slots, bookings);
+    }
 
-            ps.setInt(5, slot.id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Failed to update parking slot: " + e.getMessage());
-        }
+    public static void resetSlotsAndBookings() {
+        storage.resetSlotsAndBookings();
     }
 
     public static List<DataModels.Booking> fetchAllBookings() {
-        if (!databaseAvailable) return new ArrayList<>();
-        List<DataModels.Booking> bookings = new ArrayList<>();
-        String sql = "SELECT slot_id, user, vehicle, in_time, out_time, cost FROM bookings ORDER BY id DESC";
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                LocalDateTime inTime = LocalDateTime.parse(rs.getString("in_time"), DF);
-                LocalDateTime outTime = LocalDateTime.parse(rs.getString("out_time"), DF);
-
-                bookings.add(new DataModels.Booking(
-                    rs.getInt("slot_id"),
-                    rs.getString("user"),
-                    rs.getString("vehicle"),
-                    inTime,
-                    outTime,
-                    rs.getDouble("cost")));
-            }
-        } catch (SQLException e) {
-            System.err.println("Failed to fetch bookings: " + e.getMessage());
-        }
-
-        return bookings;
+        return storage.fetchAllBookings();
     }
 
     public static void insertBooking(DataModels.Booking booking) {
-        if (!databaseAvailable) return;
-        String sql = "INSERT INTO bookings(slot_id, user, vehicle, in_time, out_time, cost) VALUES(?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, booking.slotId);
-            ps.setString(2, booking.user);
-            ps.setString(3, booking.vehicle);
-            ps.setString(4, DF.format(booking.inTime));
-            ps.setString(5, DF.format(booking.outTime));
-            ps.setDouble(6, booking.cost);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Failed to insert booking: " + e.getMessage());
-        }
+        storage.insertBooking(booking);
     }
 
-    public static void resetSlotsAndBookings() {
-        if (!databaseAvailable) return;
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            conn.setAutoCommit(false);
-            try (Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate("DELETE FROM bookings");
-                stmt.executeUpdate(
-                    "UPDATE parking_slots " +
-                    "SET available = 1, booked_by = NULL, vehicle = NULL, in_time = NULL");
-            }
-            conn.commit();
-        } catch (SQLException e) {
-            System.err.println("Failed to reset slots and bookings: " + e.getMessage());
-        }
+    public static int countBookings() {
+        return storage.countBookings();
     }
 
-    private static int countSlots() {
-        if (!databaseAvailable) return 0;
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM parking_slots")) {
-            return rs.next() ? rs.getInt(1) : 0;
-        } catch (SQLException e) {
-            System.err.println("Failed to count parking slots: " + e.getMessage());
-            return 0;
-        }
+    public static List<DataModels.Booking> fetchBookingsBefore(long beforeId, int limit) {
+        return storage.fetchBookingsBefore(beforeId, limit);
+    }
+
+    public static List<DataModels.Booking> fetchBookingsAt(int offset, int limit) {
+        return storage.fetchBookingsAt(offset, limit);
+    }
+
+    public static List<DataModels.Booking> fetchBookingsForVehicle(String vehicle, int limit) {
+        return storage.fetchBookingsForVehicle(vehicle, limit);
+    }
+
+    public static List<DataModels.Booking> fetchBookingsForUser(String user, int limit) {
+        return storage.fetchBookingsForUser(user, limit);
+    }
+
+    public static List<DataModels.Booking> fetchBookingsForSlot(int slotId, int limit) {
+        return storage.fetchBookingsForSlot(slotId, limit);
+    }
+
+    public static List<DataModels.Booking> fetchBookingsBetween(LocalDateTime from, LocalDateTime to) {
+        return storage.fetchBookingsBetween(from, to);
+    }
+
+    public static boolean fetchBookingChunk(LocalDateTime from, LocalDateTime to, long afterId,
+                                            ParkingStorage.BookingChunk chunk) {
+        return storage.fetchBookingChunk(from, to, afterId, chunk);
+    }
+
+    public static long revenueBetween(LocalDateTime from, LocalDateTime to) {
+        return storage.revenueBetween(from, to);
+    }
+
+    public static List<ParkingStorage.Rollup> fetchRollups(boolean daily, LocalDateTime from, LocalDateTime to) {
+        return storage.fetchRollups(daily, from, to);
+    }
+
+    public static long rebuildRollups() {
+        return storage.rebuildRollups();
     }
 }
@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most frequent keys of an unbounded stream, approximately and in fixed
+ * memory, by the Space-Saving algorithm: at most {@code capacity} keys are
+ * counted, and a key that is not among them takes the place of the one with
+ * the lowest count, inheriting that count as its possible overestimate.
+ *
+ * Any key seen more than total/capacity times is guaranteed to be counted,
+ * and every reported count is at most {@link Entry#error} above the truth.
+ * Counters are kept sorted by count, highest first: an increment swaps the
+ * key to the front of its run of equal counts (found by binary search), so
+ * each offer is O(log capacity) and the top keys are simply a prefix.
+ */
+public final class HeavyHitters<K> {
+
+    public static final class Entry<K> {
+        public final K key;
+        /** Upper bound on how often the key was seen. */
+        public final long count;
+        /** How much of {@link #count} may belong to keys this one replaced. */
+        public final long error;
+
+        Entry(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        /** Times the key was certainly seen. */
+        public long guaranteed() {
+            return count - error;
+        }
+    }
+
+    private final Object[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<K, Integer> positions;
+    private int size;
+    private long total;
+
+    public HeavyHitters(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        keys = new Object[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        positions = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void offer(K key) {
+        total++;
+        Integer at = positions.get(key);
+        if (at != null) {
+            counts[moveToRunStart(at)]++;
+        } else if (size < keys.length) {
+            // Every count is at least 1, so a new key with 1 belongs at the end.
+            keys[size] = key;
+            counts[size] = 1;
+            errors[size] = 0;
+            positions.put(key, size);
+            size++;
+        } else {
+            int p = moveToRunStart(size - 1);
+            positions.remove(key(p));
+            keys[p] = key;
+            errors[p] = counts[p];
+            counts[p]++;
+            positions.put(key, p);
+        }
+    }
+
+    /**
+     * Swaps the counter at {@code p} with the first one of equal count and
+     * returns its new position, where one more keeps the order intact.
+     */
+    private int moveToRunStart(int p) {
+        long count = counts[p];
+        int low = 0;
+        int high = p;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (counts[mid] > count) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low != p) {
+            Object key = keys[low];
+            keys[low] = keys[p];
+            keys[p] = key;
+            long error = errors[low];
+            errors[low] = errors[p];
+            errors[p] = error;
+            positions.put(key(low), low);
+            positions.put(key(p), p);
+        }
+        return low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int p) {
+        return (K) keys[p];
+    }
+
+    /** Up to {@code n} keys, most frequent first. */
+    public synchronized List<Entry<K>> top(int n) {
+        List<Entry<K>> top = new ArrayList<>();
+        for (int p = 0; p < Math.min(n, size); p++) {
+            top.add(new Entry<>(key(p), counts[p], errors[p]));
+        }
+        return top;
+    }
+
+    /** Keys offered so far, counting repeats. */
+    public synchronized long total() {
+        return total;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public synchronized void clear() {
+        positions.clear();
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+        total = 0;
+    }
+}
@@ -0,0 +1,571 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * {@link MemoryStorage} that appends every change to a memory-mapped journal
+ * and replays it on open. The file is locked while open, so only one process
+ * uses it at a time.
+ *
+ * The journal is a 64-byte header followed by fixed 56-byte records (slot
+ * claimed, slot released, booking, reset). User and vehicle names are
+ * interned into a per-journal dictionary the first time they appear, so an
+ * append is a handful of puts into the mapped buffer with no allocation.
+ * Each public write is one transaction: its last record carries an END flag,
+ * and on open anything after the last END (a torn or half-written
+ * transaction) is discarded.
+ *
+ * Every -Dparking.journal.snapshotRecords records (default 1,000,000), and on
+ * close, the whole state is written to {@code <journal>.snapshot} and the
+ * journal starts over under the next generation number. A journal whose
+ * generation the snapshot already covers is skipped on open, so a crash
+ * between the two steps loses nothing.
+ *
+ * With -Dparking.journal.fsync=true every transaction is forced to disk
+ * before the write returns; otherwise it is left to the OS to flush.
+ */
+public class JournalStorage extends MemoryStorage {
+
+    private static final int MAGIC = 0x504B4A4C; // "PKJL"
+    private static final int SNAPSHOT_MAGIC = 0x504B5334; // "PKS4"
+    private static final int FORMAT = 3;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 56;
+    private static final long INITIAL_CAPACITY = 4L << 20;
+
+    // Header layout
+    private static final int H_MAGIC = 0;
+    private static final int H_FORMAT = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_GENERATION = 16;
+
+    // Record layout
+    private static final int R_TYPE = 0;
+    private static final int R_SLOT = 4;
+    private static final int R_USER = 8;
+    private static final int R_VEHICLE = 12;
+    private static final int R_IN = 16;
+    private static final int R_OUT = 24;
+    private static final int R_COST = 32;
+    private static final int R_BOOKING = 40;
+    private static final int R_CHECKSUM = 48;
+
+    // Record types; 0 marks the end of the log
+    private static final int CLAIM = 1;
+    private static final int RELEASE = 2;
+    private static final int BOOKING = 3;
+    private static final int RESET = 4;
+    // Dictionary entry: R_USER holds the id, R_VEHICLE the UTF-8 length and
+    // R_IN a hash of the bytes, which follow in raw RECORD_SIZE chunks.
+    private static final int DICT = 5;
+    private static final int TYPE_MASK = 0xFF;
+    private static final int END = 0x100;
+    // CLAIM and BOOKING records keep the surge percent in the top 16 bits of R_TYPE.
+    private static final int SURGE_SHIFT = 16;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Path path;
+    private final Path snapshotPath;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final boolean fsync = Boolean.getBoolean("parking.journal.fsync");
+    private final long snapshotRecords = Long.getLong("parking.journal.snapshotRecords", 1_000_000L);
+
+    private MappedByteBuffer buffer;
+    private long generation;
+    private int position = HEADER_SIZE;
+    private int txStart = HEADER_SIZE;
+    private long records = 0;
+    // Set when the journal could not grow; the next commit writes a snapshot instead.
+    private boolean failed = false;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private JournalStorage(Path path, FileChannel channel, FileLock lock) {
+        this.path = path;
+        this.snapshotPath = path.resolveSibling(path.getFileName() + ".snapshot");
+        this.channel = channel;
+        this.lock = lock;
+        names.add(null);
+    }
+
+    /** Opens or creates the journal at {@code path}, loads its snapshot and replays it. */
+    public static JournalStorage open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Journal " + path + " is in use by another process");
+        }
+        JournalStorage storage = new JournalStorage(path, channel, lock);
+        try {
+            storage.load();
+        } catch (IOException | RuntimeException e) {
+            storage.release();
+            throw e;
+        }
+        // A snapshot keeps the bookings but not each check-in, so peaks are recounted on first use.
+        storage.invalidateRollups();
+        return storage;
+    }
+
+    @Override
+    public String name() {
+        return "journal";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (isClosed()) return;
+        if (records > 0 || failed) {
+            snapshot();
+        }
+        super.close();
+        release();
+    }
+
+    private void release() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close journal " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void storeSlot(DataModels.ParkingSlot slot) {
+        super.storeSlot(slot);
+        if (slot.available) {
+            append(RELEASE, slot.id, 0, 0, NO_TIME, NO_TIME, 0, 0);
+        } else {
+            int user = intern(slot.bookedBy);
+            int vehicle = intern(slot.vehicle);
+            append(CLAIM | slot.surgePercent << SURGE_SHIFT, slot.id, user, vehicle,
+                time(slot.inTime), NO_TIME, 0, 0);
+        }
+    }
+
+    @Override
+    protected void storeBooking(DataModels.Booking booking) {
+        super.storeBooking(booking);
+        int user = intern(booking.user);
+        int vehicle = intern(booking.vehicle);
+        append(BOOKING | booking.surgePercent << SURGE_SHIFT, booking.slotId, user, vehicle,
+            time(booking.inTime), time(booking.outTime), booking.costPaise, booking.id);
+    }
+
+    @Override
+    protected void storeReset() {
+        super.storeReset();
+        append(RESET, 0, 0, 0, NO_TIME, NO_TIME, 0, lastBookingId());
+    }
+
+    /**
+     * Marks the last record of the transaction with END, which makes the
+     * whole transaction visible to replay, then snapshots if the journal has
+     * grown past the threshold.
+     */
+    @Override
+    protected void commit() {
+        if (failed) {
+            snapshot();
+            return;
+        }
+        if (position == txStart) {
+            return;
+        }
+        int last = position - RECORD_SIZE;
+        buffer.putInt(last + R_TYPE, buffer.getInt(last + R_TYPE) | END);
+        buffer.putInt(last + R_CHECKSUM, checksum(last));
+        if (fsync) {
+            buffer.force(txStart, position - txStart);
+        }
+        txStart = position;
+        if (records >= snapshotRecords) {
+            snapshot();
+        }
+    }
+
+    private void append(int type, int slot, int user, int vehicle, long in, long out, long cost, long booking) {
+        if (failed || !ensureCapacity(1)) return;
+        int at = position;
+        buffer.putInt(at + R_TYPE, type);
+        buffer.putInt(at + R_SLOT, slot);
+        buffer.putInt(at + R_USER, user);
+        buffer.putInt(at + R_VEHICLE, vehicle);
+        buffer.putLong(at + R_IN, in);
+        buffer.putLong(at + R_OUT, out);
+        buffer.putLong(at + R_COST, cost);
+        buffer.putLong(at + R_BOOKING, booking);
+        buffer.putInt(at + R_CHECKSUM, checksum(at));
+        position += RECORD_SIZE;
+        records++;
+    }
+
+    /** Dictionary id for {@code name}, writing a DICT entry the first time it is seen; 0 for null. */
+    private int intern(String name) {
+        if (name == null) return 0;
+        Integer known = dictionary.get(name);
+        if (known != null) return known;
+
+        int id = names.size();
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int chunks = (bytes.length + RECORD_SIZE - 1) / RECORD_SIZE;
+        if (failed || !ensureCapacity(1 + chunks)) return id;
+        int at = position;
+        buffer.putInt(at + R_TYPE, DICT);
+        buffer.putInt(at + R_SLOT, 0);
+        buffer.putInt(at + R_USER, id);
+        buffer.putInt(at + R_VEHICLE, bytes.length);
+        buffer.putLong(at + R_IN, hash(bytes, 0, bytes.length));
+        buffer.putLong(at + R_OUT, 0);
+        buffer.putLong(at + R_COST, 0);
+        buffer.putLong(at + R_BOOKING, 0);
+        buffer.putInt(at + R_CHECKSUM, checksum(at));
+        buffer.put(at + RECORD_SIZE, bytes);
+        position += (1 + chunks) * RECORD_SIZE;
+        records += 1 + chunks;
+        dictionary.put(name, id);
+        names.add(name);
+        return id;
+    }
+
+    /** Makes room for {@code count} more records, doubling the mapping when full. */
+    private boolean ensureCapacity(int count) {
+        long needed = position + (long) count * RECORD_SIZE;
+        if (needed <= buffer.capacity()) {
+            return true;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < needed) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            System.err.println("Journal " + path + " is full; writing a snapshot instead");
+            failed = true;
+            return false;
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to grow journal " + path + ": " + e.getMessage());
+            failed = true;
+            return false;
+        }
+    }
+
+    /**
+     * Writes the full state to the snapshot file and starts a fresh journal
+     * generation. If the snapshot cannot be written the journal is left as it
+     * is and keeps growing.
+     */
+    private void snapshot() {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            writeSnapshot(temp);
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write journal snapshot " + snapshotPath + ": " + e.getMessage());
+            return;
+        }
+        startGeneration(generation + 1);
+        failed = false;
+    }
+
+    private void writeSnapshot(Path temp) throws IOException {
+        List<DataModels.ParkingSlot> slots = fetchAllSlots();
+        List<DataModels.Booking> bookings = fetchAllBookings();
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            BufferedOutputStream buffered = new BufferedOutputStream(file, 1 << 16);
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            out.writeLong(lastBookingId());
+            out.writeInt(slots.size());
+            for (DataModels.ParkingSlot slot : slots) {
+                out.writeInt(slot.id);
+                out.writeBoolean(slot.available);
+                writeString(out, slot.bookedBy);
+                writeString(out, slot.vehicle);
+                out.writeLong(time(slot.inTime));
+                out.writeShort(slot.surgePercent);
+            }
+            out.writeInt(bookings.size());
+            for (int i = bookings.size() - 1; i >= 0; i--) {
+                DataModels.Booking booking = bookings.get(i);
+                out.writeLong(booking.id);
+                out.writeInt(booking.slotId);
+                writeString(out, booking.user);
+                writeString(out, booking.vehicle);
+                out.writeLong(time(booking.inTime));
+                out.writeLong(time(booking.outTime));
+                out.writeLong(booking.costPaise);
+                out.writeShort(booking.surgePercent);
+            }
+            out.flush();
+            new DataOutputStream(buffered).writeLong(crc.getValue());
+            buffered.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /** Loads the snapshot, if any, and returns the journal generation it covers (0 if none). */
+    private long readSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Snapshot " + snapshotPath + " is not a parking journal snapshot");
+            }
+            long covered = in.readLong();
+            long lastBookingId = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                DataModels.ParkingSlot slot = new DataModels.ParkingSlot(in.readInt());
+                slot.available = in.readBoolean();
+                slot.bookedBy = readString(in);
+                slot.vehicle = readString(in);
+                slot.inTime = fromTime(in.readLong());
+                slot.surgePercent = in.readShort();
+                super.storeSlot(slot);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                long id = in.readLong();
+                DataModels.Booking booking = new DataModels.Booking(in.readInt(), readString(in), readString(in),
+                    fromTime(in.readLong()), fromTime(in.readLong()), in.readLong());
+                booking.id = id;
+                booking.surgePercent = in.readShort();
+                super.storeBooking(booking);
+            }
+            advanceBookingIds(lastBookingId);
+            long expected = crc.getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                throw new IOException("Snapshot " + snapshotPath + " is corrupt");
+            }
+            return covered;
+        }
+    }
+
+    private void load() throws IOException {
+        long covered = readSnapshot();
+        long size = channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if (size == 0) {
+            startGeneration(covered + 1);
+            return;
+        }
+        if (size < HEADER_SIZE || buffer.getInt(H_MAGIC) != MAGIC
+                || buffer.getInt(H_FORMAT) != FORMAT
+                || buffer.getInt(H_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IOException("Journal " + path + " has an unknown format");
+        }
+        generation = buffer.getLong(H_GENERATION);
+        if (generation <= covered) {
+            // Already folded into the snapshot; the process died before the journal was reset.
+            startGeneration(covered + 1);
+            return;
+        }
+        if (generation != covered + 1) {
+            throw new IOException("Journal " + path + " is generation " + generation
+                + " but its snapshot covers only up to " + covered);
+        }
+
+        int end = lastCommitted();
+        int replayed = replay(end);
+        clearFrom(end);
+        position = end;
+        txStart = end;
+        records = (end - HEADER_SIZE) / RECORD_SIZE;
+        System.out.println("Replayed " + replayed + " journal records from " + path);
+    }
+
+    /** Offset just past the last record carrying END; everything after it is discarded. */
+    private int lastCommitted() {
+        int end = HEADER_SIZE;
+        int at = HEADER_SIZE;
+        while (at + RECORD_SIZE <= buffer.capacity()) {
+            int type = buffer.getInt(at + R_TYPE);
+            if ((type & TYPE_MASK) == 0 || buffer.getInt(at + R_CHECKSUM) != checksum(at)) {
+                break;
+            }
+            int next = at + RECORD_SIZE;
+            if ((type & TYPE_MASK) == DICT) {
+                int length = buffer.getInt(at + R_VEHICLE);
+                next += (length + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+                if (length < 0 || next > buffer.capacity()
+                        || hash(at + RECORD_SIZE, length) != buffer.getLong(at + R_IN)) {
+                    break;
+                }
+            }
+            if ((type & END) != 0) {
+                end = next;
+            }
+            at = next;
+        }
+        return end;
+    }
+
+    private int replay(int end) {
+        int count = 0;
+        for (int at = HEADER_SIZE; at < end; at += RECORD_SIZE, count++) {
+            int slotId = buffer.getInt(at + R_SLOT);
+            int type = buffer.getInt(at + R_TYPE);
+            int surge = type >>> SURGE_SHIFT;
+            switch (type & TYPE_MASK) {
+                case CLAIM: {
+                    DataModels.ParkingSlot slot = new DataModels.ParkingSlot(slotId);
+                    slot.available = false;
+                    slot.bookedBy = names.get(buffer.getInt(at + R_USER));
+                    slot.vehicle = names.get(buffer.getInt(at + R_VEHICLE));
+                    slot.inTime = fromTime(buffer.getLong(at + R_IN));
+                    slot.surgePercent = surge;
+                    super.storeSlot(slot);
+                    break;
+                }
+                case RELEASE:
+                    super.storeSlot(new DataModels.ParkingSlot(slotId));
+                    break;
+                case BOOKING: {
+                    DataModels.Booking booking = new DataModels.Booking(slotId,
+                        names.get(buffer.getInt(at + R_USER)), names.get(buffer.getInt(at + R_VEHICLE)),
+                        fromTime(buffer.getLong(at + R_IN)), fromTime(buffer.getLong(at + R_OUT)),
+                        buffer.getLong(at + R_COST));
+                    booking.id = buffer.getLong(at + R_BOOKING);
+                    booking.surgePercent = surge;
+                    super.storeBooking(booking);
+                    break;
+                }
+                case RESET:
+                    super.storeReset();
+                    advanceBookingIds(buffer.getLong(at + R_BOOKING));
+                    break;
+                case DICT: {
+                    int length = buffer.getInt(at + R_VEHICLE);
+                    byte[] bytes = new byte[length];
+                    buffer.get(at + RECORD_SIZE, bytes);
+                    String name = new String(bytes, StandardCharsets.UTF_8);
+                    dictionary.put(name, names.size());
+                    names.add(name);
+                    at += (length + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown journal record type at offset " + at);
+            }
+        }
+        return count;
+    }
+
+    /** Empties the journal and stamps it with {@code next}, forcing the header to disk. */
+    private void startGeneration(long next) {
+        clearFrom(HEADER_SIZE);
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_FORMAT, FORMAT);
+        buffer.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        buffer.putLong(H_GENERATION, next);
+        buffer.force();
+        generation = next;
+        position = HEADER_SIZE;
+        txStart = HEADER_SIZE;
+        records = 0;
+        dictionary.clear();
+        names.subList(1, names.size()).clear();
+    }
+
+    /** Zeroes the mapping from {@code from} on, so stale bytes are never read back as records. */
+    private void clearFrom(int from) {
+        for (int at = from; at + 8 <= buffer.capacity(); at += 8) {
+            if (buffer.getLong(at) != 0) {
+                buffer.putLong(at, 0);
+            }
+        }
+    }
+
+    /** Mixes a record's fields and the journal generation, so records left over from an older generation fail. */
+    private int checksum(int at) {
+        long h = generation * 0x9E3779B97F4A7C15L;
+        h = mix(h, buffer.getInt(at + R_TYPE));
+        h = mix(h, buffer.getInt(at + R_SLOT));
+        h = mix(h, buffer.getInt(at + R_USER));
+        h = mix(h, buffer.getInt(at + R_VEHICLE));
+        h = mix(h, buffer.getLong(at + R_IN));
+        h = mix(h, buffer.getLong(at + R_OUT));
+        h = mix(h, buffer.getLong(at + R_COST));
+        h = mix(h, buffer.getLong(at + R_BOOKING));
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long hash(int from, int length) {
+        long h = length;
+        for (int i = 0; i < length; i++) {
+            h = mix(h, buffer.get(from + i));
+        }
+        return h;
+    }
+
+    private static long hash(byte[] bytes, int from, int length) {
+        long h = length;
+        for (int i = from; i < from + length; i++) {
+            h = mix(h, bytes[i]);
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h = (h ^ value) * 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 29);
+    }
+
+    private static long time(LocalDateTime time) {
+        return time == null ? NO_TIME : DataModels.toEpochMillis(time);
+    }
+
+    private static LocalDateTime fromTime(long millis) {
+        return millis == NO_TIME ? null : DataModels.fromEpochMillis(millis);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
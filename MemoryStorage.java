@@ -0,0 +1,536 @@
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * {@link ParkingStorage} that keeps everything on the heap. Nothing survives
+ * a restart, which makes it the fastest backend and the fallback when SQLite
+ * cannot be opened. Every call is synchronized, so each one is atomic.
+ *
+ * State changes go through {@link #storeSlot}, {@link #storeBooking} and
+ * {@link #storeReset}, and each public write ends with {@link #commit}, so a
+ * subclass can persist exactly what changed. Rollups are kept up to date by
+ * the same three methods.
+ */
+public class MemoryStorage implements ParkingStorage {
+
+    private final TreeMap<Integer, DataModels.ParkingSlot> slots = new TreeMap<>();
+    // Mirrors SQLite's change_log: the version each slot was last written at, and the reverse.
+    private final Map<Integer, Long> slotVersions = new HashMap<>();
+    private final TreeMap<Long, Integer> changeLog = new TreeMap<>();
+    // Ascending by id.
+    private final ArrayList<DataModels.Booking> bookings = new ArrayList<>();
+    private long version = 0;
+    private long resetVersion = 0;
+    private long lastBookingId = 0;
+    private boolean closed = false;
+    // Bucket start -> slot group -> totals.
+    private final TreeMap<Long, TreeMap<String, Rollup>> hourly = new TreeMap<>();
+    private final TreeMap<Long, TreeMap<String, Rollup>> daily = new TreeMap<>();
+    private final Map<String, Integer> occupiedByGroup = new HashMap<>();
+    private boolean rollupsStale = false;
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public synchronized void ensureMinimumSlots(int minimumSlots) {
+        if (closed) return;
+        for (int id = slots.size() + 1; id <= minimumSlots; id++) {
+            if (!slots.containsKey(id)) {
+                storeSlot(new DataModels.ParkingSlot(id));
+            }
+        }
+        commit();
+    }
+
+    @Override
+    public synchronized List<DataModels.ParkingSlot> fetchAllSlots() {
+        List<DataModels.ParkingSlot> all = new ArrayList<>(slots.size());
+        if (closed) return all;
+        for (DataModels.ParkingSlot slot : slots.values()) {
+            all.add(copy(slot));
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized ChangeSet fetchChangesSince(long sinceVersion, long afterBookingId) {
+        if (closed) return null;
+        ChangeSet changes = new ChangeSet();
+        changes.version = version;
+        changes.lastBookingId = lastBookingId;
+        changes.bookingsReset = resetVersion > sinceVersion && sinceVersion >= 0;
+
+        if (sinceVersion < 0) {
+            changes.slots.addAll(fetchAllSlots());
+        } else {
+            TreeMap<Integer, DataModels.ParkingSlot> changed = new TreeMap<>();
+            for (int id : changeLog.tailMap(sinceVersion, false).values()) {
+                changed.put(id, copy(slots.get(id)));
+            }
+            changes.slots.addAll(changed.values());
+        }
+
+        long fromBookingId = changes.bookingsReset ? 0 : afterBookingId;
+        for (int i = fromBookingId < 0 ? bookings.size() : firstBookingAfter(fromBookingId); i < bookings.size(); i++) {
+            changes.bookings.add(copy(bookings.get(i)));
+        }
+        return changes;
+    }
+
+    @Override
+    public synchronized DataModels.ParkingSlot fetchSlotByOccupant(String user, String vehicle) {
+        if (closed) return null;
+        for (DataModels.ParkingSlot slot : slots.values()) {
+            if (!slot.available && Objects.equals(slot.bookedBy, user) && Objects.equals(slot.vehicle, vehicle)) {
+                return copy(slot);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void insertSlot(int id) {
+        if (closed || slots.containsKey(id)) return;
+        storeSlot(new DataModels.ParkingSlot(id));
+        commit();
+    }
+
+    @Override
+    public synchronized void updateSlot(DataModels.ParkingSlot slot) {
+        if (closed || !slots.containsKey(slot.id)) return;
+        storeSlot(copy(slot));
+        commit();
+    }
+
+    @Override
+    public synchronized int claimSlot(DataModels.ParkingSlot slot) {
+        if (closed) return -1;
+        DataModels.ParkingSlot current = slots.get(slot.id);
+        if (current == null || !current.available) {
+            return 0;
+        }
+        DataModels.ParkingSlot claimed = copy(slot);
+        claimed.available = false;
+        storeSlot(claimed);
+        commit();
+        return 1;
+    }
+
+    @Override
+    public synchronized int releaseSlot(DataModels.ParkingSlot occupied, DataModels.Booking booking) {
+        if (closed) return -1;
+        DataModels.ParkingSlot current = slots.get(occupied.id);
+        if (current == null || current.available
+                || !Objects.equals(current.bookedBy, occupied.bookedBy)
+                || !Objects.equals(current.vehicle, occupied.vehicle)) {
+            return 0;
+        }
+        storeSlot(new DataModels.ParkingSlot(occupied.id));
+        storeBooking(unsaved(booking));
+        commit();
+        return 1;
+    }
+
+    @Override
+    public synchronized int replaceSlot(DataModels.ParkingSlot expected, DataModels.ParkingSlot slot) {
+        if (closed) return -1;
+        DataModels.ParkingSlot current = slots.get(slot.id);
+        if (current == null || current.available != expected.available
+                || !current.available && (!Objects.equals(current.bookedBy, expected.bookedBy)
+                    || !Objects.equals(current.vehicle, expected.vehicle))) {
+            return 0;
+        }
+        storeSlot(copy(slot));
+        commit();
+        return 1;
+    }
+
+    @Override
+    public synchronized boolean applyBatch(boolean reset,
+                                           Collection<Integer> newSlotIds,
+                                           Collection<DataModels.ParkingSlot> slotUpdates,
+                                           Collection<DataModels.Booking> newBookings) {
+        if (closed) return false;
+        if (reset) {
+            clearAll();
+        }
+        for (int id : newSlotIds) {
+            if (!slots.containsKey(id)) {
+                storeSlot(new DataModels.ParkingSlot(id));
+            }
+        }
+        for (DataModels.ParkingSlot slot : slotUpdates) {
+            if (slots.containsKey(slot.id)) {
+                storeSlot(copy(slot));
+            }
+        }
+        for (DataModels.Booking booking : newBookings) {
+            storeBooking(unsaved(booking));
+        }
+        commit();
+        return true;
+    }
+
+    @Override
+    public synchronized void resetSlotsAndBookings() {
+        if (closed) return;
+        clearAll();
+        commit();
+    }
+
+    private void clearAll() {
+        storeReset();
+        for (DataModels.ParkingSlot slot : new ArrayList<>(slots.values())) {
+            storeSlot(new DataModels.ParkingSlot(slot.id));
+        }
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchAllBookings() {
+        if (closed) return new ArrayList<>();
+        return newestFirst(b -> true, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void insertBooking(DataModels.Booking booking) {
+        if (closed) return;
+        storeBooking(unsaved(booking));
+        commit();
+    }
+
+    @Override
+    public synchronized int countBookings() {
+        return closed ? 0 : bookings.size();
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchBookingsBefore(long beforeId, int limit) {
+        if (closed) return null;
+        List<DataModels.Booking> page = new ArrayList<>();
+        for (int i = firstBookingAfter(beforeId - 1) - 1; i >= 0 && page.size() < limit; i--) {
+            page.add(copy(bookings.get(i)));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchBookingsAt(int offset, int limit) {
+        if (closed) return null;
+        List<DataModels.Booking> page = new ArrayList<>();
+        for (int i = bookings.size() - 1 - offset; i >= 0 && page.size() < limit; i--) {
+            page.add(copy(bookings.get(i)));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchBookingsForVehicle(String vehicle, int limit) {
+        if (closed) return null;
+        return byOutTimeDesc(b -> b.vehicle.equals(vehicle), limit);
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchBookingsForUser(String user, int limit) {
+        if (closed) return null;
+        return byOutTimeDesc(b -> b.user.equals(user), limit);
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchBookingsForSlot(int slotId, int limit) {
+        if (closed) return null;
+        return byOutTimeDesc(b -> b.slotId == slotId, limit);
+    }
+
+    @Override
+    public synchronized List<DataModels.Booking> fetchBookingsBetween(LocalDateTime from, LocalDateTime to) {
+        if (closed) return null;
+        List<DataModels.Booking> matches = newestFirst(b -> inRange(b, from, to), Integer.MAX_VALUE);
+        matches.sort(Comparator.comparing((DataModels.Booking b) -> b.outTime));
+        return matches;
+    }
+
+    @Override
+    public synchronized boolean fetchBookingChunk(LocalDateTime from, LocalDateTime to, long afterId,
+                                                  ParkingStorage.BookingChunk chunk) {
+        chunk.size = 0;
+        if (closed) return false;
+        for (int i = firstBookingAfter(afterId); i < bookings.size() && chunk.size < chunk.capacity(); i++) {
+            DataModels.Booking booking = bookings.get(i);
+            if (inRange(booking, from, to)) {
+                chunk.add(booking.id, booking.slotId, DataModels.toEpochMillis(booking.inTime),
+                    DataModels.toEpochMillis(booking.outTime), booking.costPaise, booking.surgePercent,
+                    booking.user, booking.vehicle);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized long revenueBetween(LocalDateTime from, LocalDateTime to) {
+        if (closed) return -1;
+        long total = 0;
+        for (DataModels.Booking booking : bookings) {
+            if (inRange(booking, from, to)) {
+                total += booking.costPaise;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized List<Rollup> fetchRollups(boolean daily, LocalDateTime from, LocalDateTime to) {
+        if (closed) return null;
+        if (rollupsStale) {
+            rebuildRollups();
+        }
+        List<Rollup> rows = new ArrayList<>();
+        TreeMap<Long, TreeMap<String, Rollup>> table = daily ? this.daily : hourly;
+        for (TreeMap<String, Rollup> bucket : table.subMap(
+                DataModels.toEpochMillis(from), DataModels.toEpochMillis(to)).values()) {
+            for (Rollup rollup : bucket.values()) {
+                rows.add(copy(rollup));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Totals every booking again, and sweeps check-ins and check-outs in time
+     * order for the peaks (see {@link RollupSweep}).
+     */
+    @Override
+    public synchronized long rebuildRollups() {
+        if (closed) return -1;
+        hourly.clear();
+        daily.clear();
+        occupiedByGroup.clear();
+        TariffEngine tariff = TariffEngine.current();
+
+        // Event times shifted left with the slot type in the low TYPE_BITS, so plain
+        // long sorts order them by time; TariffEngine rejects tariffs with more types.
+        long[] ins = new long[bookings.size() + slots.size()];
+        long[] outs = new long[bookings.size()];
+        int inCount = 0;
+        for (int i = 0; i < bookings.size(); i++) {
+            DataModels.Booking booking = bookings.get(i);
+            addToRollups(booking);
+            int type = tariff.typeOf(booking.slotId);
+            ins[inCount++] = DataModels.toEpochMillis(booking.inTime) << TariffEngine.TYPE_BITS | type;
+            outs[i] = DataModels.toEpochMillis(booking.outTime) << TariffEngine.TYPE_BITS | type;
+        }
+        for (DataModels.ParkingSlot slot : slots.values()) {
+            if (!slot.available) {
+                occupiedByGroup.merge(slotGroup(slot.id), 1, Integer::sum);
+                if (slot.inTime != null) {
+                    ins[inCount++] = DataModels.toEpochMillis(slot.inTime) << TariffEngine.TYPE_BITS
+                        | tariff.typeOf(slot.id);
+                }
+            }
+        }
+        Arrays.sort(ins, 0, inCount);
+        Arrays.sort(outs);
+
+        RollupSweep sweep = new RollupSweep((isDaily, bucket, group, occupied) ->
+            rollup(isDaily, bucket, group).peakOccupied = occupied);
+        int mask = TariffEngine.MAX_TYPES - 1;
+        int o = 0;
+        for (int i = 0; i < inCount; i++) {
+            long in = ins[i] >> TariffEngine.TYPE_BITS;
+            while (o < outs.length && outs[o] >> TariffEngine.TYPE_BITS <= in) {
+                sweep.checkOut(tariff.typeName((int) (outs[o++] & mask)));
+            }
+            sweep.checkIn(in, tariff.typeName((int) (ins[i] & mask)));
+        }
+        sweep.finish();
+        rollupsStale = false;
+        return bookings.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+    }
+
+    protected synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /** The stored slot itself, not a copy, or null; for subclasses tracking what they wrote. */
+    protected DataModels.ParkingSlot storedSlot(int id) {
+        return slots.get(id);
+    }
+
+    /** Writes a slot's full state and stamps it with a new change version. */
+    protected void storeSlot(DataModels.ParkingSlot slot) {
+        countOccupancy(slots.put(slot.id, slot), slot);
+        Long previous = slotVersions.put(slot.id, ++version);
+        if (previous != null) {
+            changeLog.remove(previous);
+        }
+        changeLog.put(version, slot.id);
+    }
+
+    /** Appends a booking, giving it the next id unless it already has one. */
+    protected void storeBooking(DataModels.Booking booking) {
+        if (booking.id <= lastBookingId) {
+            booking.id = lastBookingId + 1;
+        }
+        lastBookingId = booking.id;
+        bookings.add(booking);
+        addToRollups(booking);
+    }
+
+    /** Deletes the booking history; ids keep counting up, as with SQLite's AUTOINCREMENT. */
+    protected void storeReset() {
+        bookings.clear();
+        hourly.clear();
+        daily.clear();
+        resetVersion = ++version;
+    }
+
+    /** Highest booking id handed out so far, including deleted bookings. */
+    protected long lastBookingId() {
+        return lastBookingId;
+    }
+
+    /** Makes new bookings number above {@code id}; used when restoring saved state. */
+    protected void advanceBookingIds(long id) {
+        lastBookingId = Math.max(lastBookingId, id);
+    }
+
+    /**
+     * Makes the next {@link #fetchRollups} rebuild them; for subclasses that
+     * restore state without replaying every check-in.
+     */
+    protected void invalidateRollups() {
+        rollupsStale = true;
+    }
+
+    /** Called once at the end of every public write; the in-memory store has nothing to do. */
+    protected void commit() {
+    }
+
+    /** Keeps the per-group occupied counts, and the peaks they reach on check-in. */
+    private void countOccupancy(DataModels.ParkingSlot previous, DataModels.ParkingSlot slot) {
+        boolean wasOccupied = previous != null && !previous.available;
+        if (wasOccupied == !slot.available) return;
+        String group = slotGroup(slot.id);
+        int occupied = occupiedByGroup.merge(group, slot.available ? -1 : 1, Integer::sum);
+        if (!slot.available) {
+            long at = DataModels.toEpochMillis(slot.inTime != null ? slot.inTime : LocalDateTime.now());
+            Rollup hour = rollup(false, Rollup.bucketOf(at, false), group);
+            hour.peakOccupied = Math.max(hour.peakOccupied, occupied);
+            Rollup day = rollup(true, Rollup.bucketOf(at, true), group);
+            day.peakOccupied = Math.max(day.peakOccupied, occupied);
+        }
+    }
+
+    private void addToRollups(DataModels.Booking booking) {
+        long in = DataModels.toEpochMillis(booking.inTime);
+        long out = DataModels.toEpochMillis(booking.outTime);
+        String group = slotGroup(booking.slotId);
+        for (boolean isDaily : new boolean[] {false, true}) {
+            Rollup rollup = rollup(isDaily, Rollup.bucketOf(out, isDaily), group);
+            rollup.revenuePaise += booking.costPaise;
+            rollup.bookings++;
+            rollup.dwellMinutes += (out - in) / 60_000L;
+        }
+    }
+
+    private Rollup rollup(boolean isDaily, long bucket, String group) {
+        return (isDaily ? daily : hourly).computeIfAbsent(bucket, b -> new TreeMap<>())
+            .computeIfAbsent(group, g -> new Rollup(bucket, g));
+    }
+
+    private static String slotGroup(int slotId) {
+        TariffEngine tariff = TariffEngine.current();
+        return tariff.typeName(tariff.typeOf(slotId));
+    }
+
+    private static Rollup copy(Rollup rollup) {
+        Rollup copy = new Rollup(rollup.bucket, rollup.slotGroup);
+        copy.revenuePaise = rollup.revenuePaise;
+        copy.bookings = rollup.bookings;
+        copy.dwellMinutes = rollup.dwellMinutes;
+        copy.peakOccupied = rollup.peakOccupied;
+        return copy;
+    }
+
+    /** Index of the first booking with an id above {@code id}. */
+    private int firstBookingAfter(long id) {
+        int low = 0;
+        int high = bookings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bookings.get(mid).id <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<DataModels.Booking> newestFirst(Predicate<DataModels.Booking> filter, int limit) {
+        List<DataModels.Booking> matches = new ArrayList<>();
+        for (int i = bookings.size() - 1; i >= 0 && matches.size() < limit; i--) {
+            DataModels.Booking booking = bookings.get(i);
+            if (filter.test(booking)) {
+                matches.add(copy(booking));
+            }
+        }
+        return matches;
+    }
+
+    private List<DataModels.Booking> byOutTimeDesc(Predicate<DataModels.Booking> filter, int limit) {
+        List<DataModels.Booking> matches = newestFirst(filter, Integer.MAX_VALUE);
+        matches.sort(Comparator.comparing((DataModels.Booking b) -> b.outTime).reversed());
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private static boolean inRange(DataModels.Booking booking, LocalDateTime from, LocalDateTime to) {
+        return !booking.outTime.isBefore(truncate(from)) && booking.outTime.isBefore(truncate(to));
+    }
+
+    static DataModels.ParkingSlot copy(DataModels.ParkingSlot slot) {
+        DataModels.ParkingSlot copy = new DataModels.ParkingSlot(slot.id);
+        copy.available = slot.available;
+        copy.bookedBy = slot.bookedBy;
+        copy.vehicle = slot.vehicle;
+        copy.inTime = truncate(slot.inTime);
+        copy.surgePercent = slot.surgePercent;
+        return copy;
+    }
+
+    static DataModels.Booking copy(DataModels.Booking booking) {
+        DataModels.Booking copy = new DataModels.Booking(booking.slotId, booking.user, booking.vehicle,
+            truncate(booking.inTime), truncate(booking.outTime), booking.costPaise);
+        copy.id = booking.id;
+        copy.surgePercent = booking.surgePercent;
+        return copy;
+    }
+
+    /** A copy without an id, so the store numbers it like an INSERT would. */
+    private static DataModels.Booking unsaved(DataModels.Booking booking) {
+        DataModels.Booking copy = copy(booking);
+        copy.id = 0;
+        return copy;
+    }
+
+    private static LocalDateTime truncate(LocalDateTime time) {
+        return time == null ? null : time.truncatedTo(ChronoUnit.MILLIS);
+    }
+}
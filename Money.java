@@ -0,0 +1,56 @@
+/**
+ * Money is a {@code long} count of paise everywhere: in bookings, in the
+ * database and in the tariff tables. Sums are exact, and nothing is
+ * rounded until an amount is shown.
+ */
+public final class Money {
+
+    public static final long PAISE_PER_RUPEE = 100;
+
+    // "₹n.00" for whole rupees below this, created on first use.
+    private static final int CACHED_RUPEES = 10_000;
+    private static final String[] WHOLE_RUPEES = new String[CACHED_RUPEES];
+
+    private Money() {
+    }
+
+    /** Nearest paise to a rupee amount, e.g. from a rate in a config file. */
+    public static long ofRupees(double rupees) {
+        return Math.round(rupees * PAISE_PER_RUPEE);
+    }
+
+    public static double toRupees(long paise) {
+        return paise / (double) PAISE_PER_RUPEE;
+    }
+
+    /**
+     * Formats like {@code "₹1234.50"}. Whole-rupee amounts, which most
+     * tariffs produce, come from a cache.
+     */
+    public static String format(long paise) {
+        if (paise >= 0 && paise % PAISE_PER_RUPEE == 0 && paise / PAISE_PER_RUPEE < CACHED_RUPEES) {
+            int rupees = (int) (paise / PAISE_PER_RUPEE);
+            String cached = WHOLE_RUPEES[rupees];
+            if (cached == null) {
+                cached = appendTo(new StringBuilder(12), paise).toString();
+                WHOLE_RUPEES[rupees] = cached;
+            }
+            return cached;
+        }
+        return appendTo(new StringBuilder(16), paise).toString();
+    }
+
+    /** Appends the same text as {@link #format} without creating any objects. */
+    public static StringBuilder appendTo(StringBuilder out, long paise) {
+        if (paise < 0) {
+            out.append('-');
+            paise = -paise;
+        }
+        long fraction = paise % PAISE_PER_RUPEE;
+        out.append('₹').append(paise / PAISE_PER_RUPEE).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+}
@@ -0,0 +1,101 @@
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Month-end report from the daily rollups: revenue, bookings, average stay
+ * and peak occupancy per day and slot group, then month totals. Usage:
+ *
+ *   java MonthlyReport [yyyy-MM] [--backfill]
+ *
+ * The month defaults to the current one. The report reads one rollup row per
+ * day and group, never the booking history. {@code --backfill} first rebuilds
+ * every rollup from the history, for a database written before rollups
+ * existed or after bookings were edited by hand.
+ */
+public class MonthlyReport {
+
+    public static void main(String[] args) {
+        YearMonth month = YearMonth.now();
+        boolean backfill = false;
+        try {
+            for (String arg : args) {
+                if (arg.equals("--backfill")) {
+                    backfill = true;
+                } else {
+                    month = YearMonth.parse(arg);
+                }
+            }
+        } catch (DateTimeParseException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Usage: java MonthlyReport [yyyy-MM] [--backfill]");
+            System.exit(2);
+        }
+
+        if (backfill) {
+            long started = System.nanoTime();
+            long count = DatabaseManager.rebuildRollups();
+            if (count < 0) {
+                System.out.println("✗ Backfill failed");
+                DatabaseManager.shutdown();
+                System.exit(1);
+            }
+            System.out.printf("✓ Rebuilt rollups from %,d bookings in %.2f s%n%n",
+                count, (System.nanoTime() - started) / 1e9);
+        }
+
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        List<ParkingStorage.Rollup> days = DatabaseManager.fetchRollups(true, from, from.plusMonths(1));
+        DatabaseManager.shutdown();
+        if (days == null) {
+            System.out.println("✗ Failed to read the rollups");
+            System.exit(1);
+        }
+        report(month, days);
+    }
+
+    private static void report(YearMonth month, List<ParkingStorage.Rollup> days) {
+        System.out.println("=== Parking report for " + month + " ===");
+        if (days.isEmpty()) {
+            System.out.println("No bookings or check-ins this month.");
+            return;
+        }
+        String row = "%-12s %-12s %16s %10s %12s %6s%n";
+        System.out.printf(row, "Day", "Slot group", "Revenue", "Bookings", "Avg stay", "Peak");
+        Map<String, ParkingStorage.Rollup> totals = new TreeMap<>();
+        ParkingStorage.Rollup all = new ParkingStorage.Rollup(0, "all");
+        for (ParkingStorage.Rollup day : days) {
+            System.out.printf(row, DataModels.fromEpochMillis(day.bucket).toLocalDate(), day.slotGroup,
+                Money.format(day.revenuePaise), String.format("%,d", day.bookings),
+                duration(day.averageDwellMinutes()), day.peakOccupied);
+            add(totals.computeIfAbsent(day.slotGroup, group -> new ParkingStorage.Rollup(0, group)), day);
+            add(all, day);
+        }
+
+        System.out.println();
+        System.out.printf(row, "Month", "Slot group", "Revenue", "Bookings", "Avg stay", "Peak");
+        for (ParkingStorage.Rollup total : totals.values()) {
+            System.out.printf(row, month, total.slotGroup, Money.format(total.revenuePaise),
+                String.format("%,d", total.bookings), duration(total.averageDwellMinutes()), total.peakOccupied);
+        }
+        if (totals.size() > 1) {
+            // Groups peak at different times, so there is no combined peak.
+            System.out.printf(row, month, all.slotGroup, Money.format(all.revenuePaise),
+                String.format("%,d", all.bookings), duration(all.averageDwellMinutes()), "—");
+        }
+    }
+
+    private static void add(ParkingStorage.Rollup into, ParkingStorage.Rollup day) {
+        into.revenuePaise += day.revenuePaise;
+        into.bookings += day.bookings;
+        into.dwellMinutes += day.dwellMinutes;
+        into.peakOccupied = Math.max(into.peakOccupied, day.peakOccupied);
+    }
+
+    private static String duration(long minutes) {
+        return minutes / 60 + "h " + (minutes % 60 < 10 ? "0" : "") + minutes % 60 + "m";
+    }
+}
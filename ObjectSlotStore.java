@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Default slot store: one {@link DataModels.ParkingSlot} object per bay, kept sorted by id. */
+public final class ObjectSlotStore implements SlotStore {
+
+    private final List<DataModels.ParkingSlot> slots = new ArrayList<>();
+    private final Map<Integer, Integer> positions = new HashMap<>();
+
+    @Override
+    public void put(DataModels.ParkingSlot slot) {
+        Integer pos = positions.get(slot.id);
+        if (pos != null) {
+            slots.set(pos, slot);
+            return;
+        }
+        if (slots.isEmpty() || slots.get(slots.size() - 1).id < slot.id) {
+            positions.put(slot.id, slots.size());
+            slots.add(slot);
+            return;
+        }
+        slots.add(slot);
+        slots.sort((a, b) -> Integer.compare(a.id, b.id));
+        for (int i = 0; i < slots.size(); i++) {
+            positions.put(slots.get(i).id, i);
+        }
+    }
+
+    @Override
+    public DataModels.ParkingSlot get(int id) {
+        Integer pos = positions.get(id);
+        return pos == null ? null : slots.get(pos);
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return positions.containsKey(id);
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public List<DataModels.ParkingSlot> toList() {
+        return new ArrayList<>(slots);
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        positions.clear();
+    }
+}
@@ -0,0 +1,120 @@
+import javax.swing.*;
+import java.awt.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Occupancy over a trailing span, for the admin "Occupancy" view: each
+ * bucket's average share of the lot in use as a filled column, and its
+ * busiest moment as a line above. Buckets come from {@link OccupancySeries#chart},
+ * so a year costs no more points than an hour; spans the program was not
+ * running for are left blank.
+ */
+public class OccupancyChart extends JComponent {
+
+    private static final int LEFT = 56;
+    private static final int RIGHT = 20;
+    private static final int TOP = 16;
+    private static final int BOTTOM = 32;
+    // Horizontal pixels per point at most.
+    private static final int PIXELS_PER_POINT = 4;
+    private static final Color AVERAGE_COLOR = new Color(165, 180, 252);
+    private static final Color GRID_COLOR = new Color(229, 231, 235);
+
+    private long spanMillis = OccupancySeries.Tier.DAY.millis;
+    private long from;
+    private long to;
+    private List<OccupancySeries.Point> points = Collections.emptyList();
+
+    public OccupancyChart() {
+        setPreferredSize(new Dimension(900, 420));
+        setFont(new Font("Segoe UI", Font.PLAIN, 12));
+    }
+
+    /** Shows the last {@code spanMillis} up to now. */
+    public void setSpan(long spanMillis) {
+        this.spanMillis = spanMillis;
+        reload();
+    }
+
+    public void reload() {
+        to = DataModels.toEpochMillis(LocalDateTime.now());
+        from = to - spanMillis;
+        int width = getWidth() > 0 ? getWidth() - LEFT - RIGHT : getPreferredSize().width;
+        points = DataModels.occupancySeries().chart(from, to, Math.max(12, width / PIXELS_PER_POINT));
+        repaint();
+    }
+
+    /** Points currently shown, oldest first. */
+    public List<OccupancySeries.Point> points() {
+        return points;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(UIComponents.CARD_BG);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+
+        int w = getWidth() - LEFT - RIGHT;
+        int h = getHeight() - TOP - BOTTOM;
+        if (w <= 0 || h <= 0 || to <= from) {
+            g2.dispose();
+            return;
+        }
+        FontMetrics fm = g2.getFontMetrics();
+        for (int percent = 0; percent <= 100; percent += 25) {
+            int y = TOP + h - h * percent / 100;
+            g2.setColor(GRID_COLOR);
+            g2.drawLine(LEFT, y, LEFT + w, y);
+            g2.setColor(UIComponents.TEXT_SECONDARY);
+            String label = percent + "%";
+            g2.drawString(label, LEFT - 8 - fm.stringWidth(label), y + fm.getAscent() / 2 - 1);
+        }
+
+        DateTimeFormatter format = DateTimeFormatter.ofPattern(
+            spanMillis <= OccupancySeries.Tier.DAY.millis ? "MM-dd HH:mm" : "yyyy-MM-dd");
+        g2.drawString(format.format(DataModels.fromEpochMillis(from)), LEFT, TOP + h + fm.getAscent() + 8);
+        String end = format.format(DataModels.fromEpochMillis(to));
+        g2.drawString(end, LEFT + w - fm.stringWidth(end), TOP + h + fm.getAscent() + 8);
+
+        if (points.isEmpty()) {
+            String empty = "No occupancy recorded in this period";
+            g2.drawString(empty, LEFT + (w - fm.stringWidth(empty)) / 2, TOP + h / 2);
+            g2.dispose();
+            return;
+        }
+
+        int previousX = -1;
+        int previousY = -1;
+        for (OccupancySeries.Point p : points) {
+            int x0 = x(p.bucket, w);
+            int x1 = Math.max(x0 + 1, x(p.bucket + p.length, w));
+            int average = y(p.averagePercent(), h);
+            g2.setColor(AVERAGE_COLOR);
+            g2.fillRect(x0, average, x1 - x0, TOP + h - average);
+
+            int peak = y(p.total == 0 ? 0 : 100.0 * p.max / p.total, h);
+            g2.setColor(UIComponents.PRIMARY_COLOR);
+            if (previousX == x0) {
+                g2.drawLine(x0, previousY, x0, peak);
+            }
+            g2.drawLine(x0, peak, x1, peak);
+            previousX = x1;
+            previousY = peak;
+        }
+        g2.dispose();
+    }
+
+    private int x(long millis, int w) {
+        long clamped = Math.max(from, Math.min(to, millis));
+        return LEFT + (int) ((clamped - from) * w / (to - from));
+    }
+
+    private int y(double percent, int h) {
+        return TOP + h - (int) Math.round(h * Math.min(100, percent) / 100);
+    }
+}
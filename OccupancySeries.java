@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How full the lot was over time, kept in three fixed-size rings: minutes,
+ * hours and days. Each {@link #record} integrates the previous level up to
+ * now into the open entry of every tier and starts a new entry when a bucket
+ * ends, so the coarser tiers are exact downsamples of the finer one and
+ * storage never grows: once a ring is full its oldest entry is overwritten.
+ *
+ * Defaults keep 7 days of minutes, 180 days of hours and about 10 years of
+ * days (-Dparking.series.minutes / .hours / .days, read when the file is
+ * created), in under 600 KB.
+ *
+ * The rings live in a memory-mapped file (-Dparking.series, default
+ * parking_system.series) made of a 64-byte header and fixed 32-byte entries,
+ * so a record is a few puts into the mapped buffer. The file is locked while
+ * open; a second terminal on the same file, or the memory backend, records
+ * into a heap buffer instead.
+ */
+public final class OccupancySeries {
+
+    public enum Tier {
+        MINUTE(60_000L, "parking.series.minutes", 7 * 24 * 60),
+        HOUR(3_600_000L, "parking.series.hours", 180 * 24),
+        DAY(86_400_000L, "parking.series.days", 3660);
+
+        public final long millis;
+        final String property;
+        final int defaultCapacity;
+
+        Tier(long millis, String property, int defaultCapacity) {
+            this.millis = millis;
+            this.property = property;
+            this.defaultCapacity = defaultCapacity;
+        }
+    }
+
+    /** One bucket of one tier; times as from {@link DataModels#toEpochMillis}. */
+    public static final class Point {
+        public final long bucket;
+        /** Length of the bucket in milliseconds. */
+        public final long length;
+        /** Occupied slots times milliseconds, over the part of the bucket that was recorded. */
+        public final long occupiedMillis;
+        public final long coveredMillis;
+        public final int min;
+        public final int max;
+        /** Slots in the lot at the last record in the bucket. */
+        public final int total;
+
+        Point(long bucket, long length, long occupiedMillis, long coveredMillis, int min, int max, int total) {
+            this.bucket = bucket;
+            this.length = length;
+            this.occupiedMillis = occupiedMillis;
+            this.coveredMillis = coveredMillis;
+            this.min = min;
+            this.max = max;
+            this.total = total;
+        }
+
+        /** Time-weighted average of occupied slots; the level recorded if no time has passed yet. */
+        public double average() {
+            return coveredMillis == 0 ? max : (double) occupiedMillis / coveredMillis;
+        }
+
+        public double averagePercent() {
+            return total == 0 ? 0 : 100 * average() / total;
+        }
+    }
+
+    private static final int MAGIC = 0x504B4F53; // "PKOS"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 32;
+    private static final long TICK_MS = Long.getLong("parking.series.tickMs", 60_000L);
+    private static final long NONE = Long.MIN_VALUE;
+
+    // Header layout: a capacity (int) and an entry count (long) per tier
+    private static final int H_MAGIC = 0;
+    private static final int H_FORMAT = 4;
+    private static final int H_ENTRY_SIZE = 8;
+    private static final int H_CAPACITY = 12;
+    private static final int H_COUNT = 24;
+
+    // Entry layout
+    private static final int E_BUCKET = 0;
+    private static final int E_OCCUPIED = 8;
+    private static final int E_COVERED = 16;
+    private static final int E_MIN = 20;
+    private static final int E_MAX = 24;
+    private static final int E_TOTAL = 28;
+
+    private static final Tier[] TIERS = Tier.values();
+
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final String name;
+    private final int[] capacity = new int[TIERS.length];
+    private final int[] base = new int[TIERS.length];
+    // Entries ever written per tier; the last one is the bucket being filled.
+    private final long[] count = new long[TIERS.length];
+    private long lastMillis = NONE;
+    private int level;
+    private int slots;
+    private Thread ticker;
+    private boolean closed;
+
+    private OccupancySeries(ByteBuffer buffer, FileChannel channel, FileLock lock, String name) {
+        this.buffer = buffer;
+        this.channel = channel;
+        this.lock = lock;
+        this.name = name;
+    }
+
+    /** A series kept only in memory. */
+    public static OccupancySeries inMemory() {
+        int[] capacities = defaultCapacities();
+        OccupancySeries series = new OccupancySeries(ByteBuffer.allocate(fileSize(capacities)), null, null, "memory");
+        series.format(capacities);
+        return series;
+    }
+
+    /** Opens or creates the series file at {@code path}. */
+    public static OccupancySeries open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Series " + path + " is in use by another process");
+            }
+            int[] capacities = defaultCapacities();
+            boolean fresh = channel.size() == 0;
+            if (!fresh) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_FORMAT) != FORMAT
+                        || header.getInt(H_ENTRY_SIZE) != ENTRY_SIZE) {
+                    throw new IOException(path + " is not an occupancy series");
+                }
+                for (int t = 0; t < TIERS.length; t++) {
+                    capacities[t] = header.getInt(H_CAPACITY + 4 * t);
+                    if (capacities[t] <= 0 || header.getLong(H_COUNT + 8 * t) < 0) {
+                        throw new IOException(path + " has a corrupt " + TIERS[t] + " tier header");
+                    }
+                }
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacities));
+            OccupancySeries series = new OccupancySeries(mapped, channel, lock, path.toString());
+            if (fresh) {
+                series.format(capacities);
+            } else {
+                series.load(capacities);
+            }
+            return series;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** The file from -Dparking.series, or memory for the memory backend or if the file cannot be used. */
+    static OccupancySeries openDefault() {
+        if ("memory".equals(System.getProperty("parking.storage"))) {
+            return inMemory();
+        }
+        String path = System.getProperty("parking.series", "parking_system.series");
+        try {
+            return open(Paths.get(path));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARNING: Failed to open occupancy series " + path + ". Keeping it in memory only.");
+            System.err.println("Error: " + e.getMessage());
+            return inMemory();
+        }
+    }
+
+    private static int[] defaultCapacities() {
+        int[] capacities = new int[TIERS.length];
+        for (int t = 0; t < TIERS.length; t++) {
+            capacities[t] = Math.max(1, Integer.getInteger(TIERS[t].property, TIERS[t].defaultCapacity));
+        }
+        return capacities;
+    }
+
+    private static int fileSize(int[] capacities) {
+        long size = HEADER_SIZE;
+        for (int capacity : capacities) {
+            size += (long) capacity * ENTRY_SIZE;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Occupancy series capacities are too large");
+        }
+        return (int) size;
+    }
+
+    private void format(int[] capacities) {
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_FORMAT, FORMAT);
+        buffer.putInt(H_ENTRY_SIZE, ENTRY_SIZE);
+        load(capacities);
+    }
+
+    private void load(int[] capacities) {
+        int offset = HEADER_SIZE;
+        for (int t = 0; t < TIERS.length; t++) {
+            buffer.putInt(H_CAPACITY + 4 * t, capacities[t]);
+            capacity[t] = capacities[t];
+            base[t] = offset;
+            count[t] = buffer.getLong(H_COUNT + 8 * t);
+            offset += capacities[t] * ENTRY_SIZE;
+        }
+    }
+
+    /**
+     * Records the lot's counts now and then every -Dparking.series.tickMs
+     * (default a minute), so quiet periods still fill their buckets.
+     */
+    synchronized void start() {
+        tick();
+        if (ticker != null || closed) return;
+        ticker = new Thread(this::runTicker, "parking-series");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private void runTicker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(TICK_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            tick();
+        }
+    }
+
+    private void tick() {
+        record(DataModels.toEpochMillis(LocalDateTime.now()), DataModels.occupiedSlots(), DataModels.totalSlots());
+    }
+
+    /**
+     * Notes that {@code occupied} of {@code total} slots are in use from
+     * {@code now} on. The previous level is counted up to {@code now}; a
+     * clock that steps back is treated as standing still.
+     */
+    public synchronized void record(long now, int occupied, int total) {
+        if (closed) return;
+        if (lastMillis != NONE) {
+            now = Math.max(now, lastMillis);
+            for (int t = 0; t < TIERS.length; t++) {
+                accumulate(t, lastMillis, now);
+            }
+        }
+        lastMillis = now;
+        level = occupied;
+        slots = total;
+        for (int t = 0; t < TIERS.length; t++) {
+            int at = open(t, now - Math.floorMod(now, TIERS[t].millis));
+            buffer.putInt(at + E_MIN, Math.min(buffer.getInt(at + E_MIN), occupied));
+            buffer.putInt(at + E_MAX, Math.max(buffer.getInt(at + E_MAX), occupied));
+            buffer.putInt(at + E_TOTAL, total);
+        }
+    }
+
+    /** Adds the current level over {@code [from, to)} to tier {@code t}, one bucket at a time. */
+    private void accumulate(int t, long from, long to) {
+        long size = TIERS[t].millis;
+        // Older buckets than the ring holds would be overwritten straight away.
+        from = Math.max(from, to - Math.floorMod(to, size) - (capacity[t] - 1) * size);
+        while (from < to) {
+            long bucket = from - Math.floorMod(from, size);
+            long end = Math.min(to, bucket + size);
+            int at = open(t, bucket);
+            buffer.putLong(at + E_OCCUPIED, buffer.getLong(at + E_OCCUPIED) + level * (end - from));
+            buffer.putInt(at + E_COVERED, buffer.getInt(at + E_COVERED) + (int) (end - from));
+            from = end;
+        }
+    }
+
+    /** Offset of tier {@code t}'s entry for {@code bucket}, starting it (at the current level) if it is newer. */
+    private int open(int t, long bucket) {
+        long n = count[t];
+        if (n > 0) {
+            int last = offset(t, n - 1);
+            if (buffer.getLong(last + E_BUCKET) >= bucket) {
+                return last;
+            }
+        }
+        int at = offset(t, n);
+        buffer.putLong(at + E_BUCKET, bucket);
+        buffer.putLong(at + E_OCCUPIED, 0);
+        buffer.putInt(at + E_COVERED, 0);
+        buffer.putInt(at + E_MIN, level);
+        buffer.putInt(at + E_MAX, level);
+        buffer.putInt(at + E_TOTAL, slots);
+        count[t] = n + 1;
+        buffer.putLong(H_COUNT + 8 * t, n + 1);
+        return at;
+    }
+
+    private int offset(int t, long index) {
+        return base[t] + (int) (index % capacity[t]) * ENTRY_SIZE;
+    }
+
+    private Point point(int t, long index) {
+        int at = offset(t, index);
+        return new Point(buffer.getLong(at + E_BUCKET), TIERS[t].millis,
+            buffer.getLong(at + E_OCCUPIED), buffer.getInt(at + E_COVERED),
+            buffer.getInt(at + E_MIN), buffer.getInt(at + E_MAX), buffer.getInt(at + E_TOTAL));
+    }
+
+    /** Index of the oldest entry of tier {@code t} still in its ring. */
+    private long oldest(int t) {
+        return Math.max(0, count[t] - capacity[t]);
+    }
+
+    /**
+     * Buckets of {@code tier} that overlap {@code [from, to)}, oldest first,
+     * including the one still being filled. Buckets nothing was recorded in
+     * (the program was not running) have no point.
+     */
+    public synchronized List<Point> range(Tier tier, long from, long to) {
+        int t = tier.ordinal();
+        long low = oldest(t);
+        long high = count[t];
+        // First entry whose bucket ends after from; buckets only ever increase.
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (buffer.getLong(offset(t, mid) + E_BUCKET) + tier.millis <= from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Point> points = new ArrayList<>();
+        for (long i = low; i < count[t]; i++) {
+            Point p = point(t, i);
+            if (p.bucket >= to) break;
+            points.add(p);
+        }
+        return points;
+    }
+
+    /**
+     * At most {@code maxPoints} points covering {@code [from, to)} for a chart:
+     * from the finest tier that still holds {@code from} and needs no more
+     * points than that, with neighbouring buckets merged if even days are too many.
+     */
+    public synchronized List<Point> chart(long from, long to, int maxPoints) {
+        Tier chosen = Tier.DAY;
+        for (Tier tier : TIERS) {
+            int t = tier.ordinal();
+            boolean reaches = count[t] > 0 && buffer.getLong(offset(t, oldest(t)) + E_BUCKET) <= from;
+            if (reaches && (to - from) / tier.millis <= maxPoints) {
+                chosen = tier;
+                break;
+            }
+        }
+        List<Point> points = range(chosen, from, to);
+        if (points.size() <= maxPoints) {
+            return points;
+        }
+        int group = (points.size() + maxPoints - 1) / maxPoints;
+        List<Point> merged = new ArrayList<>();
+        for (int i = 0; i < points.size(); i += group) {
+            List<Point> part = points.subList(i, Math.min(points.size(), i + group));
+            long occupied = 0;
+            long covered = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (Point p : part) {
+                occupied += p.occupiedMillis;
+                covered += p.coveredMillis;
+                min = Math.min(min, p.min);
+                max = Math.max(max, p.max);
+            }
+            Point last = part.get(part.size() - 1);
+            long start = part.get(0).bucket;
+            merged.add(new Point(start, last.bucket + last.length - start, occupied, covered, min, max, last.total));
+        }
+        return merged;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Stops the ticker, writes the file out and releases it; the level since the last record is not counted. */
+    synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+        if (channel == null) return;
+        try {
+            ((MappedByteBuffer) buffer).force();
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close occupancy series " + name + ": " + e.getMessage());
+        }
+    }
+}
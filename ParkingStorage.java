@@ -0,0 +1,240 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where slots and bookings are persisted. {@link DatabaseManager} picks one
+ * implementation at startup (-Dparking.storage=sqlite|memory|journal) and
+ * everything else goes through it, so backends are interchangeable.
+ * {@link StorageConformance} checks that an implementation behaves like the
+ * others.
+ *
+ * Methods report failure the way the SQLite backend always has: lookups
+ * return null, conditional writes return -1 and batches return false.
+ * Times are kept to the millisecond.
+ */
+public interface ParkingStorage {
+
+    /** Short name used in logs and by -Dparking.storage. */
+    String name();
+
+    /** Adds free slots so that ids 1..{@code minimumSlots} exist. */
+    void ensureMinimumSlots(int minimumSlots);
+
+    /** All slots, ordered by id. */
+    List<DataModels.ParkingSlot> fetchAllSlots();
+
+    /**
+     * Everything that changed after {@code sinceVersion} (slots) and
+     * {@code afterBookingId} (bookings), read as one consistent snapshot. A
+     * negative {@code sinceVersion} loads every slot; a negative
+     * {@code afterBookingId} skips the existing history and only reports
+     * its last id. Returns null on error.
+     */
+    ChangeSet fetchChangesSince(long sinceVersion, long afterBookingId);
+
+    /** The occupied slot held by this user and vehicle, or null. */
+    DataModels.ParkingSlot fetchSlotByOccupant(String user, String vehicle);
+
+    void insertSlot(int id);
+
+    void updateSlot(DataModels.ParkingSlot slot);
+
+    /**
+     * Occupies the slot only if it is still free. Returns 1 if the claim won,
+     * 0 if another writer got there first and -1 if the update failed.
+     */
+    int claimSlot(DataModels.ParkingSlot slot);
+
+    /**
+     * Frees the slot and records {@code booking} atomically, provided the slot
+     * is still held by the same user and vehicle. Returns 1, 0 or -1 like
+     * {@link #claimSlot}.
+     */
+    int releaseSlot(DataModels.ParkingSlot occupied, DataModels.Booking booking);
+
+    /**
+     * Writes {@code slot} only if the slot is still as {@code expected} has
+     * it: free, or held by the same user and vehicle. Returns 1, 0 or -1 like
+     * {@link #claimSlot}.
+     */
+    int replaceSlot(DataModels.ParkingSlot expected, DataModels.ParkingSlot slot);
+
+    /**
+     * Writes new slots, slot updates and bookings atomically, after first
+     * doing what {@link #resetSlotsAndBookings} does if {@code reset} is set.
+     * Returns false if nothing was committed so the caller can retry.
+     */
+    boolean applyBatch(boolean reset,
+                       Collection<Integer> newSlotIds,
+                       Collection<DataModels.ParkingSlot> slots,
+                       Collection<DataModels.Booking> bookings);
+
+    /** Deletes every booking and frees every slot. */
+    void resetSlotsAndBookings();
+
+    /** All bookings, newest first. */
+    List<DataModels.Booking> fetchAllBookings();
+
+    void insertBooking(DataModels.Booking booking);
+
+    int countBookings();
+
+    /** Up to {@code limit} bookings with an id below {@code beforeId}, newest first; null on error. */
+    List<DataModels.Booking> fetchBookingsBefore(long beforeId, int limit);
+
+    /** Up to {@code limit} bookings starting {@code offset} rows from the newest; null on error. */
+    List<DataModels.Booking> fetchBookingsAt(int offset, int limit);
+
+    /** A vehicle's most recent {@code limit} bookings by out time; null on error. */
+    List<DataModels.Booking> fetchBookingsForVehicle(String vehicle, int limit);
+
+    /** A user's most recent {@code limit} bookings by out time; null on error. */
+    List<DataModels.Booking> fetchBookingsForUser(String user, int limit);
+
+    /** One slot's most recent {@code limit} bookings by out time; null on error. */
+    List<DataModels.Booking> fetchBookingsForSlot(int slotId, int limit);
+
+    /** Bookings that ended in {@code [from, to)}, oldest first; null on error. */
+    List<DataModels.Booking> fetchBookingsBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Fills {@code chunk} with the next bookings, in id order, that ended in
+     * {@code [from, to)} and have an id above {@code afterId}. A chunk that
+     * comes back short of its capacity is the last; pass the last id read to
+     * continue. Returns false on error.
+     */
+    boolean fetchBookingChunk(LocalDateTime from, LocalDateTime to, long afterId, BookingChunk chunk);
+
+    /** Total cost in paise of the bookings that ended in {@code [from, to)}, or -1 on error. */
+    long revenueBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Pre-aggregated {@link Rollup} rows for the hours (or days, if
+     * {@code daily}) that start in {@code [from, to)}, ordered by bucket then
+     * slot group. Kept up to date as bookings and claims are written, so
+     * reports never scan the history. Null on error.
+     */
+    List<Rollup> fetchRollups(boolean daily, LocalDateTime from, LocalDateTime to);
+
+    /** Recomputes every rollup from the booking history; returns the number of bookings read, or -1 on error. */
+    long rebuildRollups();
+
+    /** Releases files and connections; later calls fail as if the store were unavailable. */
+    void close();
+
+    final class ChangeSet {
+        /** Highest change version included in this set. */
+        public long version;
+        /** Highest booking id included in this set. */
+        public long lastBookingId;
+        /** True if the booking history was cleared; {@link #bookings} then holds the full history. */
+        public boolean bookingsReset;
+        /** Changed (or, on a full load, all) slots, ordered by id. */
+        public final List<DataModels.ParkingSlot> slots = new ArrayList<>();
+        /** New bookings, oldest first. */
+        public final List<DataModels.Booking> bookings = new ArrayList<>();
+    }
+
+    /**
+     * Totals for one slot group (tariff slot type) over one hour or day.
+     * Hours and days with neither a booking ending nor a check-in have no row.
+     */
+    final class Rollup {
+        public static final long HOUR_MS = 3_600_000L;
+        public static final long DAY_MS = 86_400_000L;
+
+        /** Start of the hour or day, as from {@link DataModels#toEpochMillis}. */
+        public long bucket;
+        public String slotGroup;
+        /** Revenue, count and total minutes parked of the bookings that ended in the bucket. */
+        public long revenuePaise;
+        public long bookings;
+        public long dwellMinutes;
+        /** Most slots of the group occupied at once, counted right after each check-in in the bucket. */
+        public int peakOccupied;
+
+        public Rollup(long bucket, String slotGroup) {
+            this.bucket = bucket;
+            this.slotGroup = slotGroup;
+        }
+
+        /** Start of the hour (or day) that {@code millis} falls in. */
+        public static long bucketOf(long millis, boolean daily) {
+            long size = daily ? DAY_MS : HOUR_MS;
+            return millis - Math.floorMod(millis, size);
+        }
+
+        public long averageDwellMinutes() {
+            return bookings == 0 ? 0 : dwellMinutes / bookings;
+        }
+    }
+
+    /**
+     * Bookings as parallel primitive arrays, for jobs that read the whole
+     * history. Users and vehicles are only read if the chunk was created with
+     * names. Reused from one chunk to the next.
+     */
+    final class BookingChunk {
+        public final long[] ids;
+        public final int[] slotIds;
+        /** Times as from {@link DataModels#toEpochMillis}. */
+        public final long[] inMillis;
+        public final long[] outMillis;
+        public final long[] costPaise;
+        public final int[] surgePercents;
+        /** Null unless the chunk was created with names. */
+        public final String[] users;
+        public final String[] vehicles;
+        public int size;
+        /**
+         * Highest id in the window, looked up when a scan starts (afterId 0)
+         * or the chunk has none yet, so the last fetch stops there instead of
+         * reading to the end of the table. Copy it when alternating chunks.
+         */
+        public long throughId;
+
+        public BookingChunk(int capacity) {
+            this(capacity, false);
+        }
+
+        public BookingChunk(int capacity, boolean withNames) {
+            ids = new long[capacity];
+            slotIds = new int[capacity];
+            inMillis = new long[capacity];
+            outMillis = new long[capacity];
+            costPaise = new long[capacity];
+            surgePercents = new int[capacity];
+            users = withNames ? new String[capacity] : null;
+            vehicles = withNames ? new String[capacity] : null;
+        }
+
+        public int capacity() {
+            return ids.length;
+        }
+
+        public boolean hasNames() {
+            return users != null;
+        }
+
+        public void add(long id, int slotId, long in, long out, long cost, int surgePercent) {
+            ids[size] = id;
+            slotIds[size] = slotId;
+            inMillis[size] = in;
+            outMillis[size] = out;
+            costPaise[size] = cost;
+            surgePercents[size] = surgePercent;
+            size++;
+        }
+
+        /** Adds a booking along with its user and vehicle, which are dropped if the chunk has no names. */
+        public void add(long id, int slotId, long in, long out, long cost, int surgePercent, String user, String vehicle) {
+            if (users != null) {
+                users[size] = user;
+                vehicles[size] = vehicle;
+            }
+            add(id, slotId, in, out, cost, surgePercent);
+        }
+    }
+}
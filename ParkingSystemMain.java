@@ -3,6 +3,8 @@ import java.awt.*;
 
 public class ParkingSystemMain extends JFrame {
     
+    private static final int REFRESH_INTERVAL_MS = 2000;
+    
     private CardLayout mainCardLayout;
     private JPanel mainPanel;
     
@@ -30,6 +32,9 @@ public class ParkingSystemMain extends JFrame {
         add(mainPanel);
         
         mainCardLayout.show(mainPanel, "login");
+        
+        // Picks up bookings made on other terminals; listeners only hear about real changes.
+        new Timer(REFRESH_INTERVAL_MS, e -> AsyncData.refresh()).start();
     }
     
     private void createPanels() {
@@ -46,14 +51,21 @@ public class ParkingSystemMain extends JFrame {
     private void setupCallbacks() {
         loginPanel.setOnAdminLogin(e -> {
             adminDashboard.refreshPanels();
+            AsyncData.onEdt(AsyncData.refresh(), done -> adminDashboard.refreshPanels());
         });
         
         loginPanel.setOnUserLogin(e -> {
             userDashboard.refreshPanel();
+            AsyncData.onEdt(AsyncData.refresh(), done -> userDashboard.refreshPanel());
         });
     }
     
     public static void main(String[] args) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            AsyncData.shutdown();
+            DataModels.shutdown();
+        }, "parking-shutdown"));
+        
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -52,7 +52,6 @@ public class ParkingSystemUI extends JFrame {
     private DefaultListModel<String> userSlotListModel;
     private JLabel userBookingInfo;
 
-    private static final double RATE_PER_HOUR = 20.0;
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     
     // Modern color palette
@@ -470,7 +469,7 @@ public class ParkingSystemUI extends JFrame {
                 } else {
                     // free slot -> record booking with outTime now, compute cost
                     LocalDateTime out = LocalDateTime.now();
-                    double cost = calculateCost(s.inTime, out);
+                    double cost = Money.toRupees(TariffEngine.cost(s.id, s.inTime, out));
                     bookings.add(new Booking(s.id, s.bookedBy, s.vehicle, s.inTime, out, cost));
                     s.available = true;
                     s.bookedBy = null; s.vehicle = null; s.inTime = null;
@@ -572,7 +571,7 @@ public class ParkingSystemUI extends JFrame {
                 JOptionPane.showMessageDialog(this, "Slot is available (no active in-time).");
                 result.setText("Cost: ₹0.00");
             } else {
-                double cost = calculateCost(s.inTime, LocalDateTime.now());
+                double cost = Money.toRupees(TariffEngine.cost(s.id, s.inTime, LocalDateTime.now()));
                 result.setText(String.format("Cost: ₹%.2f (from %s to now)", cost, DF.format(s.inTime)));
             }
         });
@@ -779,7 +778,7 @@ public class ParkingSystemUI extends JFrame {
             for (ParkingSlot s : slots) if (!s.available && currentUser.equals(s.bookedBy) && currentVehicle.equals(s.vehicle)) { my = s; break; }
             if (my == null) { JOptionPane.showMessageDialog(this, "You have no active booking."); return; }
             LocalDateTime out = LocalDateTime.now();
-            double cost = calculateCost(my.inTime, out);
+            double cost = Money.toRupees(TariffEngine.cost(my.id, my.inTime, out));
             bookings.add(new Booking(my.id, my.bookedBy, my.vehicle, my.inTime, out, cost));
             my.available = true; my.bookedBy = null; my.vehicle = null; my.inTime = null;
             JOptionPane.showMessageDialog(this, String.format("Left slot %d. Total cost: ₹%.2f", my.id, cost));
@@ -790,7 +789,7 @@ public class ParkingSystemUI extends JFrame {
             ParkingSlot my = null;
             for (ParkingSlot s : slots) if (!s.available && currentUser.equals(s.bookedBy) && currentVehicle.equals(s.vehicle)) { my = s; break; }
             if (my == null) { JOptionPane.showMessageDialog(this, "You have no active booking."); return; }
-            double cost = calculateCost(my.inTime, LocalDateTime.now());
+            double cost = Money.toRupees(TariffEngine.cost(my.id, my.inTime, LocalDateTime.now()));
             JOptionPane.showMessageDialog(this, String.format("Cost so far: ₹%.2f (since %s)", cost, DF.format(my.inTime)));
         });
 
@@ -818,14 +817,6 @@ public class ParkingSystemUI extends JFrame {
         refreshRecordsTable();
     }
 
-    // ---------------- UTIL ----------------
-    private static double calculateCost(LocalDateTime in, LocalDateTime out) {
-        if (in == null || out == null) return 0;
-        Duration d = Duration.between(in, out);
-        double hours = d.toMinutes() / 60.0;
-        return Math.ceil(hours) * RATE_PER_HOUR;
-    }
-
     // ---------------- STYLING HELPERS ----------------
     static class ModernButton extends JButton {
         private Color baseColor;
@@ -0,0 +1,238 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slot store for very large lots. State lives in primitive arrays indexed by
+ * slot id: two bitsets (slot exists, slot occupied), the in-time as epoch
+ * milliseconds, the user/vehicle as ids into interned string dictionaries and
+ * the surge percent. {@link DataModels.ParkingSlot} objects are only created
+ * when asked for. Roughly 19 bytes per bay plus one dictionary entry per
+ * distinct user and vehicle currently parked: names are reference-counted
+ * and dropped, their ids reused, once the last bay holding them is freed.
+ */
+public final class PrimitiveSlotStore implements SlotStore {
+
+    private static final int NONE = -1;
+
+    private long[] present = new long[1];
+    private long[] occupied = new long[1];
+    private long[] inTimes = new long[64];
+    private int[] users = filled(64);
+    private int[] vehicles = filled(64);
+    private short[] surges = new short[64];
+    private int size = 0;
+    private int occupiedCount = 0;
+
+    private final Dictionary userNames = new Dictionary();
+    private final Dictionary vehicleNames = new Dictionary();
+
+    @Override
+    public void put(DataModels.ParkingSlot slot) {
+        int id = slot.id;
+        if (id < 0) {
+            throw new IllegalArgumentException("Slot id must not be negative: " + id);
+        }
+        ensureCapacity(id);
+        if (!bit(present, id)) {
+            present[id >>> 6] |= 1L << id;
+            size++;
+        }
+        if (slot.available) {
+            free(id);
+        } else {
+            occupy(id, slot.bookedBy, slot.vehicle, slot.inTime);
+            surges[id] = (short) slot.surgePercent;
+        }
+    }
+
+    /** Marks {@code id} occupied without building a slot object. */
+    public void occupy(int id, String user, String vehicle, LocalDateTime inTime) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown slot " + id);
+        }
+        // Take the new names before dropping the old ones, which may be the same.
+        int userId = userNames.acquire(user);
+        int vehicleId = vehicleNames.acquire(vehicle);
+        if (bit(occupied, id)) {
+            userNames.release(users[id]);
+            vehicleNames.release(vehicles[id]);
+        } else {
+            occupied[id >>> 6] |= 1L << id;
+            occupiedCount++;
+        }
+        users[id] = userId;
+        vehicles[id] = vehicleId;
+        inTimes[id] = inTime == null ? Long.MIN_VALUE : DataModels.toEpochMillis(inTime);
+        surges[id] = 100;
+    }
+
+    /** Marks {@code id} free without building a slot object. */
+    public void free(int id) {
+        if (!contains(id)) {
+            return;
+        }
+        if (bit(occupied, id)) {
+            occupied[id >>> 6] &= ~(1L << id);
+            occupiedCount--;
+            userNames.release(users[id]);
+            vehicleNames.release(vehicles[id]);
+        }
+        users[id] = NONE;
+        vehicles[id] = NONE;
+        inTimes[id] = Long.MIN_VALUE;
+    }
+
+    @Override
+    public DataModels.ParkingSlot get(int id) {
+        if (!contains(id)) {
+            return null;
+        }
+        DataModels.ParkingSlot slot = new DataModels.ParkingSlot(id);
+        if (bit(occupied, id)) {
+            slot.available = false;
+            slot.bookedBy = userNames.get(users[id]);
+            slot.vehicle = vehicleNames.get(vehicles[id]);
+            slot.inTime = inTimes[id] == Long.MIN_VALUE
+                ? null
+                : DataModels.fromEpochMillis(inTimes[id]);
+            slot.surgePercent = surges[id];
+        }
+        return slot;
+    }
+
+    public boolean isOccupied(int id) {
+        return contains(id) && bit(occupied, id);
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return id >= 0 && (id >>> 6) < present.length && bit(present, id);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int occupiedCount() {
+        return occupiedCount;
+    }
+
+    @Override
+    public List<DataModels.ParkingSlot> toList() {
+        List<DataModels.ParkingSlot> list = new ArrayList<>(size);
+        for (int w = 0; w < present.length; w++) {
+            long bits = present[w];
+            while (bits != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(bits);
+                list.add(get(id));
+                bits &= bits - 1;
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(present, 0L);
+        Arrays.fill(occupied, 0L);
+        size = 0;
+        occupiedCount = 0;
+        userNames.clear();
+        vehicleNames.clear();
+    }
+
+    private static int[] filled(int length) {
+        int[] ids = new int[length];
+        Arrays.fill(ids, NONE);
+        return ids;
+    }
+
+    private static boolean bit(long[] bits, int id) {
+        return (bits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < inTimes.length) {
+            return;
+        }
+        int capacity = inTimes.length;
+        while (capacity <= id) {
+            capacity *= 2;
+        }
+        int oldCapacity = inTimes.length;
+        inTimes = Arrays.copyOf(inTimes, capacity);
+        users = Arrays.copyOf(users, capacity);
+        vehicles = Arrays.copyOf(vehicles, capacity);
+        surges = Arrays.copyOf(surges, capacity);
+        Arrays.fill(users, oldCapacity, capacity, NONE);
+        Arrays.fill(vehicles, oldCapacity, capacity, NONE);
+        present = Arrays.copyOf(present, (capacity + 63) >>> 6);
+        occupied = Arrays.copyOf(occupied, (capacity + 63) >>> 6);
+    }
+
+    /**
+     * Interned strings addressed by a dense int id and counted by the bays
+     * that hold them. An id whose count drops to zero is forgotten and put on
+     * a free list, chained through {@code refs}, for the next new string.
+     */
+    private static final class Dictionary {
+        private Map<String, Integer> ids = new HashMap<>();
+        private String[] values = new String[16];
+        private int[] refs = new int[16];
+        private int count = 0;
+        private int freeHead = NONE;
+
+        int acquire(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer known = ids.get(value);
+            if (known != null) {
+                refs[known]++;
+                return known;
+            }
+            int id;
+            if (freeHead != NONE) {
+                id = freeHead;
+                freeHead = refs[id];
+            } else {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                    refs = Arrays.copyOf(refs, count * 2);
+                }
+                id = count++;
+            }
+            values[id] = value;
+            refs[id] = 1;
+            ids.put(value, id);
+            return id;
+        }
+
+        void release(int id) {
+            if (id == NONE || --refs[id] > 0) {
+                return;
+            }
+            ids.remove(values[id]);
+            values[id] = null;
+            refs[id] = freeHead;
+            freeHead = id;
+        }
+
+        String get(int id) {
+            return id == NONE ? null : values[id];
+        }
+
+        void clear() {
+            ids = new HashMap<>();
+            values = new String[16];
+            refs = new int[16];
+            count = 0;
+            freeHead = NONE;
+        }
+    }
+}
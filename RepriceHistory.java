@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * What-if re-pricing of the booking history: what the bookings that ended in
+ * a date range would have earned under other tariffs, next to what was
+ * actually charged. Usage:
+ *
+ *   java RepriceHistory [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--chunk n] [tariff.properties ...]
+ *
+ * The range is half-open ({@code --to} is the first day left out) and
+ * defaults to all bookings so far. The current tariff is always compared; each
+ * file adds a column. Bookings keep the surge they were charged at.
+ *
+ * The history is read through the configured backend in id-ordered chunks of
+ * primitive arrays, and only two chunks exist: while one is priced across
+ * the common fork/join pool, the next is read into the other.
+ */
+public class RepriceHistory {
+
+    private static final int DEFAULT_CHUNK = 50_000;
+    // Bookings per fork/join leaf.
+    private static final int LEAF = 4096;
+    private static final long PROGRESS_MS = 1000;
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    /**
+     * Prices bookings [lo, hi) of a chunk under every tariff. The result holds
+     * the recorded total, then each tariff's total, then how many bookings
+     * each tariff prices differently from what was charged.
+     */
+    private static final class PriceTask extends RecursiveTask<long[]> {
+        private final TariffEngine[] tariffs;
+        private final ParkingStorage.BookingChunk bookings;
+        private final int lo;
+        private final int hi;
+
+        PriceTask(TariffEngine[] tariffs, ParkingStorage.BookingChunk bookings, int lo, int hi) {
+            this.tariffs = tariffs;
+            this.bookings = bookings;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (hi - lo > LEAF) {
+                int mid = (lo + hi) >>> 1;
+                PriceTask left = new PriceTask(tariffs, bookings, lo, mid);
+                left.fork();
+                long[] right = new PriceTask(tariffs, bookings, mid, hi).compute();
+                return add(left.join(), right);
+            }
+            int n = tariffs.length;
+            long[] totals = new long[1 + 2 * n];
+            for (int i = lo; i < hi; i++) {
+                long cost = bookings.costPaise[i];
+                totals[0] += cost;
+                for (int t = 0; t < n; t++) {
+                    TariffEngine tariff = tariffs[t];
+                    long price = TariffEngine.surged(tariff.priceType(tariff.typeOf(bookings.slotIds[i]),
+                        bookings.inMillis[i], bookings.outMillis[i]), bookings.surgePercents[i]);
+                    totals[1 + t] += price;
+                    if (price != cost) {
+                        totals[1 + n + t]++;
+                    }
+                }
+            }
+            return totals;
+        }
+    }
+
+    public static void main(String[] args) {
+        LocalDateTime from = LocalDate.of(1970, 1, 1).atStartOfDay();
+        LocalDateTime to = LocalDate.now().plusDays(1).atStartOfDay();
+        int chunkSize = DEFAULT_CHUNK;
+        List<String> labels = new ArrayList<>();
+        List<TariffEngine> tariffs = new ArrayList<>();
+        labels.add("current");
+        tariffs.add(TariffEngine.current());
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--from":
+                        from = LocalDate.parse(args[++i]).atStartOfDay();
+                        break;
+                    case "--to":
+                        to = LocalDate.parse(args[++i]).atStartOfDay();
+                        break;
+                    case "--chunk":
+                        chunkSize = Integer.parseInt(args[++i]);
+                        if (chunkSize <= 0) throw new IllegalArgumentException("--chunk must be positive");
+                        break;
+                    default:
+                        tariffs.add(TariffEngine.load(Paths.get(args[i])));
+                        labels.add(Paths.get(args[i]).getFileName().toString());
+                        break;
+                }
+            }
+        } catch (IOException | IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error: " + (e instanceof IOException ? "cannot read " : "") + e.getMessage());
+            System.err.println("Usage: java RepriceHistory [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--chunk n] [tariff.properties ...]");
+            System.exit(2);
+        }
+
+        System.out.println("=== Re-pricing bookings that ended " + from.toLocalDate() + " to " + to.toLocalDate()
+            + " (exclusive) on " + DatabaseManager.storage().name() + " ===");
+        long[] totals = reprice(from, to, chunkSize, tariffs.toArray(new TariffEngine[0]));
+        DatabaseManager.shutdown();
+        if (totals == null) {
+            System.exit(1);
+        }
+        report(labels, totals);
+    }
+
+    /** Streams the range through the pricing tasks; returns the summed totals, or null if a read failed. */
+    private static long[] reprice(LocalDateTime from, LocalDateTime to, int chunkSize, TariffEngine[] tariffs) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long[] totals = new long[2 + 2 * tariffs.length];
+        long started = System.nanoTime();
+        long lastReport = started;
+        long count = 0;
+        long afterId = 0;
+        ParkingStorage.BookingChunk[] chunks = {
+            new ParkingStorage.BookingChunk(chunkSize), new ParkingStorage.BookingChunk(chunkSize)};
+        ForkJoinTask<long[]> pending = null;
+
+        for (int turn = 0; ; turn ^= 1) {
+            ParkingStorage.BookingChunk chunk = chunks[turn];
+            chunk.throughId = chunks[turn ^ 1].throughId;
+            boolean read = DatabaseManager.fetchBookingChunk(from, to, afterId, chunk);
+            if (pending != null) {
+                add(totals, pending.join());
+            }
+            if (!read) {
+                System.out.println("✗ Failed to read bookings after " + count + " rows");
+                return null;
+            }
+            if (chunk.size > 0) {
+                pending = pool.submit(new PriceTask(tariffs, chunk, 0, chunk.size));
+                afterId = chunk.ids[chunk.size - 1];
+                count += chunk.size;
+            }
+            if (chunk.size < chunk.capacity()) {
+                if (chunk.size > 0) {
+                    add(totals, pending.join());
+                }
+                break;
+            }
+
+            long now = System.nanoTime();
+            if ((now - lastReport) / 1_000_000 >= PROGRESS_MS) {
+                lastReport = now;
+                LocalDateTime through = DataModels.fromEpochMillis(chunk.outMillis[chunk.size - 1]);
+                System.out.printf("  %,d bookings · %,.0f/s · through %s%n",
+                    count, count / ((now - started) / 1e9), DF.format(through));
+            }
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Priced %,d bookings under %d tariff(s) in %.2f s (%,.0f bookings/s, %d threads)%n%n",
+            count, tariffs.length, seconds, count / Math.max(seconds, 1e-9), pool.getParallelism());
+        totals[totals.length - 1] = count;
+        return totals;
+    }
+
+    /** Adds a task result into the running totals, which end with the booking count. */
+    private static long[] add(long[] into, long[] from) {
+        for (int i = 0; i < from.length; i++) {
+            into[i] += from[i];
+        }
+        return into;
+    }
+
+    private static void report(List<String> labels, long[] totals) {
+        int n = labels.size();
+        long count = totals[totals.length - 1];
+        long recorded = totals[0];
+        String row = "%-24s %18s %12s %14s %12s%n";
+        System.out.printf(row, "Tariff", "Revenue", "vs recorded", "Per booking", "Repriced");
+        System.out.printf(row, "recorded", Money.format(recorded), "", perBooking(recorded, count), "");
+        for (int t = 0; t < n; t++) {
+            long revenue = totals[1 + t];
+            String change = recorded == 0 ? "—"
+                : String.format("%+.1f%%", 100.0 * (revenue - recorded) / recorded);
+            System.out.printf(row, labels.get(t), Money.format(revenue), change,
+                perBooking(revenue, count), String.format("%,d", totals[1 + n + t]));
+        }
+    }
+
+    private static String perBooking(long paise, long count) {
+        return count == 0 ? "—" : Money.format(paise / count);
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Recomputes peak occupancy from history for {@link ParkingStorage#rebuildRollups}.
+ * Check-ins and check-outs are fed in time order, check-outs first when the
+ * times are equal, and the count right after each check-in is kept per slot
+ * group, just as the live counters record it. An hour or day is handed to the
+ * sink as soon as its group moves past it, so only one of each is open per group.
+ */
+final class RollupSweep {
+
+    interface Sink {
+        void peak(boolean daily, long bucket, String slotGroup, int occupied);
+    }
+
+    private static final class Group {
+        int occupied;
+        long hour = Long.MIN_VALUE;
+        int hourPeak;
+        long day = Long.MIN_VALUE;
+        int dayPeak;
+    }
+
+    private final Map<String, Group> groups = new HashMap<>();
+    private final Sink sink;
+
+    RollupSweep(Sink sink) {
+        this.sink = sink;
+    }
+
+    void checkIn(long millis, String slotGroup) {
+        Group group = groups.computeIfAbsent(slotGroup, g -> new Group());
+        group.occupied++;
+        long hour = ParkingStorage.Rollup.bucketOf(millis, false);
+        if (hour != group.hour) {
+            flush(group, slotGroup, false);
+            group.hour = hour;
+            group.hourPeak = 0;
+        }
+        group.hourPeak = Math.max(group.hourPeak, group.occupied);
+        long day = ParkingStorage.Rollup.bucketOf(millis, true);
+        if (day != group.day) {
+            flush(group, slotGroup, true);
+            group.day = day;
+            group.dayPeak = 0;
+        }
+        group.dayPeak = Math.max(group.dayPeak, group.occupied);
+    }
+
+    void checkOut(String slotGroup) {
+        Group group = groups.get(slotGroup);
+        if (group != null && group.occupied > 0) {
+            group.occupied--;
+        }
+    }
+
+    /** Hands over the hours and days still open. */
+    void finish() {
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            flush(entry.getValue(), entry.getKey(), false);
+            flush(entry.getValue(), entry.getKey(), true);
+        }
+        groups.clear();
+    }
+
+    private void flush(Group group, String slotGroup, boolean daily) {
+        if (daily ? group.day != Long.MIN_VALUE : group.hour != Long.MIN_VALUE) {
+            sink.peak(daily, daily ? group.day : group.hour, slotGroup, daily ? group.dayPeak : group.hourPeak);
+        }
+    }
+}
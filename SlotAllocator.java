@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Two-level bitmap of free slots indexed by slot id. Each bit of
+ * {@code words} marks a free slot; each bit of {@code summary} marks a word
+ * that still has at least one free slot, so searches skip full regions 4096
+ * slots at a time. Ids that were never added count as occupied.
+ */
+public final class SlotAllocator {
+
+    private long[] words = new long[1];
+    private long[] summary = new long[1];
+    private int freeCount = 0;
+
+    public int countFree() {
+        return freeCount;
+    }
+
+    public boolean isFree(int id) {
+        int w = id >>> 6;
+        return id >= 0 && w < words.length && (words[w] & (1L << id)) != 0;
+    }
+
+    /** Marks {@code id} free or occupied, growing the bitmap as needed. */
+    public void setFree(int id, boolean free) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Slot id must not be negative: " + id);
+        }
+        if (free) {
+            ensureCapacity(id);
+            set(id);
+        } else if (id >>> 6 < words.length) {
+            unset(id);
+        }
+    }
+
+    /** Takes a free slot; returns false if it was not free. */
+    public boolean claim(int id) {
+        if (!isFree(id)) {
+            return false;
+        }
+        unset(id);
+        return true;
+    }
+
+    /** Frees an occupied slot; returns false if it was already free. */
+    public boolean release(int id) {
+        if (id < 0 || isFree(id)) {
+            return false;
+        }
+        ensureCapacity(id);
+        set(id);
+        return true;
+    }
+
+    /** Lowest free slot id, or -1 if every slot is taken. */
+    public int nextFree() {
+        return nextFree(0);
+    }
+
+    /** Lowest free slot id that is {@code >= fromId}, or -1. */
+    public int nextFree(int fromId) {
+        if (fromId < 0) {
+            fromId = 0;
+        }
+        int w = fromId >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long bits = words[w] & (-1L << fromId);
+        if (bits != 0) {
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        int next = w + 1;
+        int s = next >>> 6;
+        if (s >= summary.length) {
+            return -1;
+        }
+        long sbits = summary[s] & (-1L << next);
+        while (true) {
+            if (sbits != 0) {
+                int word = (s << 6) + Long.numberOfTrailingZeros(sbits);
+                return (word << 6) + Long.numberOfTrailingZeros(words[word]);
+            }
+            if (++s >= summary.length) {
+                return -1;
+            }
+            sbits = summary[s];
+        }
+    }
+
+    /** All free slot ids in ascending order. */
+    public int[] freeIds() {
+        int[] ids = new int[freeCount];
+        int n = 0;
+        for (int id = nextFree(0); id >= 0 && n < ids.length; id = nextFree(id + 1)) {
+            ids[n++] = id;
+        }
+        return ids;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+        Arrays.fill(summary, 0L);
+        freeCount = 0;
+    }
+
+    private void set(int id) {
+        int w = id >>> 6;
+        long bit = 1L << id;
+        if ((words[w] & bit) == 0) {
+            words[w] |= bit;
+            summary[w >>> 6] |= 1L << w;
+            freeCount++;
+        }
+    }
+
+    private void unset(int id) {
+        int w = id >>> 6;
+        long bit = 1L << id;
+        if ((words[w] & bit) != 0) {
+            words[w] &= ~bit;
+            if (words[w] == 0) {
+                summary[w >>> 6] &= ~(1L << w);
+            }
+            freeCount--;
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        int w = id >>> 6;
+        if (w < words.length) {
+            return;
+        }
+        int size = words.length;
+        while (size <= w) {
+            size *= 2;
+        }
+        words = Arrays.copyOf(words, size);
+        summary = Arrays.copyOf(summary, (size + 63) >>> 6);
+    }
+}
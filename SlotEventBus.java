@@ -0,0 +1,105 @@
+import javax.swing.SwingUtilities;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects slot and booking changes and delivers them to listeners on the
+ * Swing event dispatch thread. Changes published before the pending event
+ * is dispatched are merged into it, so a burst of updates costs listeners a
+ * single callback.
+ */
+public final class SlotEventBus {
+
+    public enum Kind {
+        SLOT_ADDED,
+        SLOT_CLAIMED,
+        SLOT_RELEASED,
+        BOOKING_RECORDED,
+        BOOKINGS_CLEARED
+    }
+
+    public interface Listener {
+        void slotsChanged(Change change);
+    }
+
+    /** One coalesced batch of changes. */
+    public static final class Change {
+        public final Set<Kind> kinds;
+        private final int[] slotIds;
+
+        Change(Set<Kind> kinds, int[] slotIds) {
+            this.kinds = kinds;
+            this.slotIds = slotIds;
+        }
+
+        /** Ids of the slots that were added, claimed or released, ascending. */
+        public int[] slotIds() {
+            return slotIds.clone();
+        }
+
+        public boolean affects(int slotId) {
+            return Arrays.binarySearch(slotIds, slotId) >= 0;
+        }
+
+        public boolean has(Kind kind) {
+            return kinds.contains(kind);
+        }
+    }
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Object lock = new Object();
+    private EnumSet<Kind> pendingKinds = EnumSet.noneOf(Kind.class);
+    private TreeSet<Integer> pendingSlots = new TreeSet<>();
+    private boolean dispatchScheduled = false;
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Records a change; {@code slotId} is ignored for booking-only kinds. */
+    public void publish(Kind kind, int slotId) {
+        synchronized (lock) {
+            pendingKinds.add(kind);
+            if (kind == Kind.SLOT_ADDED || kind == Kind.SLOT_CLAIMED || kind == Kind.SLOT_RELEASED) {
+                pendingSlots.add(slotId);
+            }
+            if (dispatchScheduled) {
+                return;
+            }
+            dispatchScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::dispatch);
+    }
+
+    private void dispatch() {
+        Change change;
+        synchronized (lock) {
+            int[] ids = new int[pendingSlots.size()];
+            int i = 0;
+            for (int id : pendingSlots) {
+                ids[i++] = id;
+            }
+            change = new Change(Collections.unmodifiableSet(pendingKinds), ids);
+            pendingKinds = EnumSet.noneOf(Kind.class);
+            pendingSlots = new TreeSet<>();
+            dispatchScheduled = false;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.slotsChanged(change);
+            } catch (RuntimeException e) {
+                System.err.println("Slot listener failed: " + e);
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+import java.util.List;
+
+/**
+ * Holds the cached state of every parking slot, keyed by slot id. Slots
+ * handed out by a store are views: change a slot through
+ * {@link DataModels#updateSlot} or {@link BookingEngine}, never in place.
+ */
+public interface SlotStore {
+
+    /** Stores the state of {@code slot}, replacing whatever was stored for its id. */
+    void put(DataModels.ParkingSlot slot);
+
+    /** The slot with {@code id}, or null if the store has never seen it. */
+    DataModels.ParkingSlot get(int id);
+
+    boolean contains(int id);
+
+    int size();
+
+    /** Every slot in ascending id order. */
+    List<DataModels.ParkingSlot> toList();
+
+    void clear();
+}
@@ -0,0 +1,395 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * {@link MemoryStorage} used while the SQLite database cannot be opened.
+ * Every public write is appended to a spool file as one CRC-checked frame
+ * before it returns, so bookings taken during an outage survive a crash; the
+ * spool is replayed on the next start. Once the database is reachable again,
+ * {@link #drainTo} copies what happened here into it and deletes the file.
+ *
+ * Only slots that were claimed, released or reset while spooling are copied
+ * back, and only where the database still has what the spool saw before its
+ * first change to the slot (free, or the same occupant), the way
+ * {@link ParkingStorage#claimSlot} and {@link ParkingStorage#releaseSlot} are
+ * conditional. A slot another terminal changed in the meantime is reported
+ * and keeps the database's state, which this terminal loads once it switches
+ * over. Slots the spool merely created are inserted if the database lacks
+ * them, never overwritten. Bookings are always copied: they happened.
+ *
+ * With -Dparking.spool.fsync=true every frame is forced to disk before the
+ * write returns; otherwise it is left to the OS to flush.
+ */
+public class SpoolStorage extends MemoryStorage {
+
+    private static final byte OP_RESET = 3;
+    private static final byte OP_SLOT = 5;
+    private static final byte OP_BOOKING = 6;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final boolean fsync = Boolean.getBoolean("parking.spool.fsync");
+
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+    private boolean replaying = false;
+
+    // Slots first seen free here, and slots changed after that.
+    private final TreeSet<Integer> created = new TreeSet<>();
+    private final TreeSet<Integer> touched = new TreeSet<>();
+    // What each touched slot held just before the spool first changed it.
+    private final Map<Integer, DataModels.ParkingSlot> seen = new HashMap<>();
+    private boolean reset = false;
+
+    private SpoolStorage(Path path, FileChannel channel, FileLock lock) {
+        this.path = path;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /** Opens or creates the spool at {@code path} and replays anything left from an earlier run. */
+    public static SpoolStorage open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Spool " + path + " is in use by another process");
+        }
+        SpoolStorage storage = new SpoolStorage(path, channel, lock);
+        try {
+            storage.replay();
+        } catch (IOException e) {
+            storage.close();
+            throw e;
+        }
+        return storage;
+    }
+
+    @Override
+    public String name() {
+        return "spool";
+    }
+
+    /** True if the spool holds nothing that still has to reach the database. */
+    public synchronized boolean isEmpty() {
+        return created.isEmpty() && touched.isEmpty() && !reset && countBookings() == 0;
+    }
+
+    /**
+     * Writes everything spooled into {@code target} and, while writers are
+     * still held off, runs {@code handOver} so the caller can switch to the
+     * target before anything else lands here. The spool is then closed and
+     * deleted. Returns false, leaving the spool as it was, if the target
+     * rejected a write; slots already written back then match on the retry.
+     *
+     * The copy holds this store's lock, so writers wait for a few database
+     * writes; they run on background threads, never the UI's.
+     */
+    public synchronized boolean drainTo(ParkingStorage target, Runnable handOver) {
+        if (isClosed()) return false;
+        List<DataModels.ParkingSlot> changed = new ArrayList<>();
+        for (int id : touched) {
+            DataModels.ParkingSlot slot = storedSlot(id);
+            if (slot != null) {
+                changed.add(copy(slot));
+            }
+        }
+        List<DataModels.Booking> bookings = fetchAllBookings();
+        Collections.reverse(bookings);
+
+        int conflicts = 0;
+        if (reset) {
+            // The reset frees every slot in the same transaction, so nothing can have changed them.
+            if (!target.applyBatch(true, created, changed, bookings)) {
+                return false;
+            }
+        } else {
+            if (!created.isEmpty() && !target.applyBatch(false, created, Collections.emptyList(), Collections.emptyList())) {
+                return false;
+            }
+            conflicts = replaySlots(target, changed);
+            if (conflicts < 0 || !target.applyBatch(false, Collections.emptyList(), Collections.emptyList(), bookings)) {
+                return false;
+            }
+        }
+        System.out.println("Copied " + bookings.size() + " spooled bookings and "
+            + (changed.size() - conflicts) + " slot changes from " + path + " to " + target.name()
+            + (conflicts > 0 ? "; " + conflicts + " slot(s) kept the database's state" : ""));
+
+        handOver.run();
+        close();
+        try {
+            // If the process dies before this, the next start copies the same bookings again.
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Failed to delete spool " + path + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Writes each changed slot only where {@code target} still has what the
+     * spool saw before changing it. Returns the number of slots left as the
+     * target has them, or -1 if a write failed.
+     */
+    private int replaySlots(ParkingStorage target, List<DataModels.ParkingSlot> changed) {
+        Map<Integer, DataModels.ParkingSlot> current = null;
+        int conflicts = 0;
+        for (DataModels.ParkingSlot slot : changed) {
+            int updated = target.replaceSlot(seen.get(slot.id), slot);
+            if (updated < 0) {
+                return -1;
+            }
+            if (updated > 0) {
+                continue;
+            }
+            if (current == null) {
+                current = new HashMap<>();
+                for (DataModels.ParkingSlot other : target.fetchAllSlots()) {
+                    current.put(other.id, other);
+                }
+            }
+            DataModels.ParkingSlot now = current.get(slot.id);
+            if (now != null && sameOccupant(now, slot)) {
+                // Written by an earlier drain that did not get as far as deleting the spool.
+                continue;
+            }
+            conflicts++;
+            System.err.println("WARNING: Slot " + slot.id + " changed in " + target.name()
+                + " while spooling; keeping " + describe(now) + " instead of the spooled " + describe(slot));
+        }
+        return conflicts;
+    }
+
+    private static boolean sameOccupant(DataModels.ParkingSlot a, DataModels.ParkingSlot b) {
+        return a.available == b.available && (a.available
+            || Objects.equals(a.bookedBy, b.bookedBy) && Objects.equals(a.vehicle, b.vehicle));
+    }
+
+    private static String describe(DataModels.ParkingSlot slot) {
+        if (slot == null) return "no slot";
+        return slot.available ? "a free slot" : slot.bookedBy + "/" + slot.vehicle;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (isClosed()) return;
+        commit();
+        super.close();
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close spool " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void storeSlot(DataModels.ParkingSlot slot) {
+        if (!created.contains(slot.id) && !touched.contains(slot.id) && slot.available) {
+            created.add(slot.id);
+        } else if (touched.add(slot.id)) {
+            DataModels.ParkingSlot before = storedSlot(slot.id);
+            seen.put(slot.id, before != null ? copy(before) : new DataModels.ParkingSlot(slot.id));
+        }
+        super.storeSlot(slot);
+        if (replaying) return;
+        try {
+            pending.writeByte(OP_SLOT);
+            pending.writeInt(slot.id);
+            pending.writeBoolean(slot.available);
+            writeString(slot.bookedBy);
+            writeString(slot.vehicle);
+            pending.writeLong(slot.inTime == null ? NO_TIME : DataModels.toEpochMillis(slot.inTime));
+            pending.writeShort(slot.surgePercent);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void storeBooking(DataModels.Booking booking) {
+        super.storeBooking(booking);
+        if (replaying) return;
+        try {
+            pending.writeByte(OP_BOOKING);
+            pending.writeLong(booking.id);
+            pending.writeInt(booking.slotId);
+            writeString(booking.user);
+            writeString(booking.vehicle);
+            pending.writeLong(DataModels.toEpochMillis(booking.inTime));
+            pending.writeLong(DataModels.toEpochMillis(booking.outTime));
+            pending.writeLong(booking.costPaise);
+            pending.writeShort(booking.surgePercent);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void storeReset() {
+        super.storeReset();
+        reset = true;
+        if (replaying) return;
+        pendingBytes.write(OP_RESET);
+    }
+
+    /**
+     * Appends everything stored since the last commit as one frame. If the
+     * write fails the changes stay pending and go out with the next commit.
+     */
+    @Override
+    protected void commit() {
+        if (pendingBytes.size() == 0 || !channel.isOpen()) {
+            return;
+        }
+        byte[] payload = pendingBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 8);
+        frame.putInt(payload.length).put(payload).putInt((int) crc.getValue()).flip();
+        long start = 0;
+        try {
+            start = channel.size();
+            channel.position(start);
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            pendingBytes.reset();
+        } catch (IOException e) {
+            System.err.println("Failed to append to spool " + path + ": " + e.getMessage());
+            try {
+                channel.truncate(start);
+            } catch (IOException ignored) {
+                // The torn frame fails its checksum and is dropped on the next open.
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        long position = 0;
+        int frames = 0;
+        replaying = true;
+        try {
+            while (position + 8 <= size) {
+                header.clear();
+                channel.read(header, position);
+                int length = header.getInt(0);
+                if (length < 0 || position + 8 + length > size) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length + 4);
+                channel.read(body, position + 4);
+                byte[] payload = new byte[length];
+                body.flip();
+                body.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (body.getInt() != (int) crc.getValue()) {
+                    break;
+                }
+                apply(payload);
+                position += 8 + length;
+                frames++;
+            }
+        } finally {
+            replaying = false;
+        }
+        if (position < size) {
+            System.err.println("Spool " + path + ": dropping " + (size - position)
+                + " bytes of incomplete or corrupt data at offset " + position);
+            channel.truncate(position);
+        }
+        if (frames > 0) {
+            System.out.println("Replayed " + frames + " spooled changes from " + path);
+        }
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        while (true) {
+            int op;
+            try {
+                op = in.readByte();
+            } catch (EOFException end) {
+                return;
+            }
+            switch (op) {
+                case OP_SLOT: {
+                    DataModels.ParkingSlot slot = new DataModels.ParkingSlot(in.readInt());
+                    slot.available = in.readBoolean();
+                    slot.bookedBy = readString(in);
+                    slot.vehicle = readString(in);
+                    long inTime = in.readLong();
+                    slot.inTime = inTime == NO_TIME ? null : DataModels.fromEpochMillis(inTime);
+                    slot.surgePercent = in.readShort();
+                    storeSlot(slot);
+                    break;
+                }
+                case OP_BOOKING: {
+                    long id = in.readLong();
+                    int slotId = in.readInt();
+                    String user = readString(in);
+                    String vehicle = readString(in);
+                    LocalDateTime inTime = DataModels.fromEpochMillis(in.readLong());
+                    LocalDateTime outTime = DataModels.fromEpochMillis(in.readLong());
+                    DataModels.Booking booking = new DataModels.Booking(slotId, user, vehicle,
+                        inTime, outTime, in.readLong());
+                    booking.id = id;
+                    booking.surgePercent = in.readShort();
+                    storeBooking(booking);
+                    break;
+                }
+                case OP_RESET:
+                    storeReset();
+                    break;
+                default:
+                    throw new IOException("Unknown spool record type " + op);
+            }
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        pending.writeBoolean(value != null);
+        if (value != null) {
+            pending.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
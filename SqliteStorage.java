@@ -0,0 +1,1156 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link ParkingStorage} backed by a SQLite file: a WAL-mode connection pool,
+ * a change_log and hourly/daily rollups maintained by triggers, and the
+ * indexes the history queries need. Several terminals can share one database
+ * file.
+ */
+public final class SqliteStorage implements ParkingStorage {
+    private static final int READER_CONNECTIONS = 2;
+    private static final DateTimeFormatter DF = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String SELECT_SLOTS_SQL =
+        "SELECT id, available, booked_by, vehicle, in_time, surge_percent FROM parking_slots";
+    private static final String UPDATE_SLOT_SQL =
+        "UPDATE parking_slots SET available = ?, booked_by = ?, vehicle = ?, in_time = ?, surge_percent = ? " +
+        "WHERE id = ?";
+    // PRAGMA user_version: 0 stores times as ISO-8601 text and costs as REAL rupees,
+    // 2 times as INTEGER epoch milliseconds and costs as INTEGER paise (cost_paise).
+    private static final int SCHEMA_VERSION = 2;
+    private static final String[] ROLLUP_TABLES = {"rollup_hourly", "rollup_daily"};
+    private static final long[] ROLLUP_SIZES = {Rollup.HOUR_MS, Rollup.DAY_MS};
+    // The local wall-clock time as epoch milliseconds, like DataModels.toEpochMillis(LocalDateTime.now()).
+    private static final String NOW_MILLIS_SQL =
+        "(CAST(ROUND(julianday('now', 'localtime') * 86400000) AS INTEGER) - 210866760000000)";
+    private static final int ROLLUP_BATCH = 10_000;
+    private boolean databaseAvailable = false;
+    // Version 0 layout, kept with -Dparking.textTimes.
+    private boolean textTimes = false;
+    // Both read the cost as paise, whichever way the schema stores it.
+    private String selectBookingsSql;
+    private String costPaiseSql;
+    private String insertBookingSql;
+    private ConnectionPool pool;
+
+    private SqliteStorage() {
+    }
+
+    /** Opens (creating or migrating as needed) the database at {@code url}; null if that fails. */
+    public static SqliteStorage open(String url) {
+        SqliteStorage storage = new SqliteStorage();
+        storage.initializeDatabase(url);
+        return storage.databaseAvailable ? storage : null;
+    }
+
+    private void initializeDatabase(String url) {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            System.err.println("WARNING: SQLite JDBC driver not found.");
+            databaseAvailable = false;
+            return;
+        }
+
+        try {
+            pool = new ConnectionPool(url, READER_CONNECTIONS);
+        } catch (SQLException e) {
+            System.err.println("WARNING: Failed to initialize database.");
+            System.err.println("Error: " + e.getMessage());
+            databaseAvailable = false;
+            return;
+        }
+
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement()) {
+
+            int version = userVersion(stmt);
+            boolean existing = tableExists(stmt, "parking_slots");
+            // -Dparking.textTimes=true leaves the schema as it is (new files get text times and
+            // REAL costs), e.g. while older terminals share the file.
+            boolean keepText = Boolean.getBoolean("parking.textTimes");
+            if (!existing) {
+                version = keepText ? 0 : SCHEMA_VERSION;
+            }
+            if (version != 0 && version != SCHEMA_VERSION) {
+                throw new SQLException("Unsupported schema version " + version);
+            }
+            textTimes = version == 0;
+            String timeType = textTimes ? "TEXT" : "INTEGER";
+            String costColumn = textTimes ? "cost REAL NOT NULL" : "cost_paise INTEGER NOT NULL";
+
+            stmt.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS parking_slots (" +
+                    "id INTEGER PRIMARY KEY," +
+                    "available INTEGER NOT NULL DEFAULT 1," +
+                    "booked_by TEXT," +
+                    "vehicle TEXT," +
+                    "in_time " + timeType + "," +
+                    "surge_percent INTEGER NOT NULL DEFAULT 100" +
+                ")");
+
+            stmt.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS bookings (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "slot_id INTEGER NOT NULL," +
+                    "user TEXT NOT NULL," +
+                    "vehicle TEXT NOT NULL," +
+                    "in_time " + timeType + " NOT NULL," +
+                    "out_time " + timeType + " NOT NULL," +
+                    costColumn + "," +
+                    "surge_percent INTEGER NOT NULL DEFAULT 100," +
+                    "FOREIGN KEY(slot_id) REFERENCES parking_slots(id)" +
+                ")");
+
+            // Surge columns are added in place whatever the schema version; older
+            // terminals never name them, so the default keeps their writes valid.
+            addColumnIfMissing(stmt, "parking_slots", "surge_percent", "INTEGER NOT NULL DEFAULT 100");
+            addColumnIfMissing(stmt, "bookings", "surge_percent", "INTEGER NOT NULL DEFAULT 100");
+
+            if (!existing && !textTimes) {
+                stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            } else if (existing && textTimes && !keepText && migrateSchema(lease.connection(), stmt)) {
+                textTimes = false;
+            }
+            String cost = textTimes ? "cost" : "cost_paise";
+            costPaiseSql = textTimes ? "CAST(ROUND(cost * 100) AS INTEGER)" : "cost_paise";
+            selectBookingsSql = "SELECT id, slot_id, user, vehicle, in_time, out_time, "
+                + costPaiseSql + " AS cost_paise, surge_percent FROM bookings";
+            insertBookingSql = "INSERT INTO bookings(slot_id, user, vehicle, in_time, out_time, " + cost
+                + ", surge_percent) VALUES(?, ?, ?, ?, ?, ?, ?)";
+
+            stmt.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS idx_parking_slots_occupant " +
+                    "ON parking_slots(booked_by, vehicle) WHERE available = 0");
+
+            // History lookups seek on the leading column and read newest first
+            // along out_time; the out_time index covers revenue sums on its own.
+            // Existing files pick these up on their next start.
+            stmt.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS idx_bookings_vehicle ON bookings(vehicle, out_time)");
+            stmt.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS idx_bookings_user ON bookings(user, out_time)");
+            stmt.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS idx_bookings_slot ON bookings(slot_id, out_time)");
+            stmt.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS idx_bookings_out_time ON bookings(out_time, " + cost + ")");
+
+            // One row per changed slot, re-stamped with a fresh version on every
+            // write. Bookings are append-only and are tracked by their id instead;
+            // the ('bookings', 0) row marks the last time the history was cleared.
+            stmt.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS change_log (" +
+                    "version INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "table_name TEXT NOT NULL," +
+                    "row_id INTEGER NOT NULL," +
+                    "UNIQUE(table_name, row_id)" +
+                ")");
+
+            stmt.executeUpdate(
+                "CREATE TRIGGER IF NOT EXISTS parking_slots_log_insert AFTER INSERT ON parking_slots BEGIN " +
+                    "INSERT OR REPLACE INTO change_log(table_name, row_id) VALUES('parking_slots', NEW.id); " +
+                "END");
+
+            stmt.executeUpdate(
+                "CREATE TRIGGER IF NOT EXISTS parking_slots_log_update AFTER UPDATE ON parking_slots BEGIN " +
+                    "INSERT OR REPLACE INTO change_log(table_name, row_id) VALUES('parking_slots', NEW.id); " +
+                "END");
+
+            createRollups(stmt);
+            syncSlotGroups(lease.connection(), stmt);
+            
+            databaseAvailable = true;
+            System.out.println("Database initialized successfully!");
+        } catch (SQLException e) {
+            System.err.println("WARNING: Failed to initialize database.");
+            System.err.println("Error: " + e.getMessage());
+            pool.close();
+            pool = null;
+            databaseAvailable = false;
+        }
+    }
+    
+    private int userVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void addColumnIfMissing(Statement stmt, String table, String column, String definition)
+            throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+    }
+
+    private boolean tableExists(Statement stmt, String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" + table + "'")) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Hourly and daily rollup tables and the triggers that keep them, in the
+     * same transaction as every booking insert and every claim, whichever
+     * terminal writes them. Slot groups are the tariff's slot types, copied
+     * into slot_groups at startup; slot_group_occupancy counts the occupied
+     * slots of each group so a claim records its peak without counting slots.
+     */
+    private void createRollups(Statement stmt) throws SQLException {
+        for (String table : ROLLUP_TABLES) {
+            stmt.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                    "bucket INTEGER NOT NULL," +
+                    "slot_group TEXT NOT NULL," +
+                    "revenue_paise INTEGER NOT NULL DEFAULT 0," +
+                    "bookings INTEGER NOT NULL DEFAULT 0," +
+                    "dwell_minutes INTEGER NOT NULL DEFAULT 0," +
+                    "peak_occupied INTEGER NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY(bucket, slot_group)" +
+                ") WITHOUT ROWID");
+        }
+        stmt.executeUpdate(
+            "CREATE TABLE IF NOT EXISTS slot_groups (slot_id INTEGER PRIMARY KEY, slot_group TEXT NOT NULL)");
+        stmt.executeUpdate(
+            "CREATE TABLE IF NOT EXISTS slot_group_occupancy (slot_group TEXT PRIMARY KEY, occupied INTEGER NOT NULL)");
+
+        String in = millisSql("NEW.in_time");
+        String out = millisSql("NEW.out_time");
+        String claimedAt = "COALESCE(" + in + ", " + NOW_MILLIS_SQL + ")";
+        String cost = textTimes ? "CAST(ROUND(NEW.cost * 100) AS INTEGER)" : "NEW.cost_paise";
+        StringBuilder booked = new StringBuilder(
+            "CREATE TRIGGER IF NOT EXISTS bookings_rollup AFTER INSERT ON bookings BEGIN ");
+        StringBuilder claimed = new StringBuilder(
+            "CREATE TRIGGER IF NOT EXISTS parking_slots_claim AFTER UPDATE OF available ON parking_slots " +
+            "WHEN OLD.available = 1 AND NEW.available = 0 BEGIN " +
+                "INSERT INTO slot_group_occupancy(slot_group, occupied) VALUES(" + groupSql("NEW.id") + ", 1) " +
+                "ON CONFLICT(slot_group) DO UPDATE SET occupied = occupied + 1; ");
+        for (int i = 0; i < ROLLUP_TABLES.length; i++) {
+            booked.append(
+                "INSERT INTO ").append(ROLLUP_TABLES[i]).append("(bucket, slot_group, revenue_paise, bookings, dwell_minutes) " +
+                "VALUES(").append(bucketSql(out, ROLLUP_SIZES[i])).append(", ").append(groupSql("NEW.slot_id"))
+                .append(", ").append(cost).append(", 1, (").append(out).append(" - ").append(in).append(") / 60000) " +
+                "ON CONFLICT(bucket, slot_group) DO UPDATE SET revenue_paise = revenue_paise + excluded.revenue_paise, " +
+                "bookings = bookings + 1, dwell_minutes = dwell_minutes + excluded.dwell_minutes; ");
+            claimed.append(
+                "INSERT INTO ").append(ROLLUP_TABLES[i]).append("(bucket, slot_group, peak_occupied) " +
+                "SELECT ").append(bucketSql(claimedAt, ROLLUP_SIZES[i])).append(", slot_group, occupied " +
+                "FROM slot_group_occupancy WHERE slot_group = ").append(groupSql("NEW.id")).append(
+                " ON CONFLICT(bucket, slot_group) DO UPDATE SET peak_occupied = MAX(peak_occupied, excluded.peak_occupied); ");
+        }
+        stmt.executeUpdate(booked.append("END").toString());
+        stmt.executeUpdate(claimed.append("END").toString());
+        stmt.executeUpdate(
+            "CREATE TRIGGER IF NOT EXISTS parking_slots_release AFTER UPDATE OF available ON parking_slots " +
+            "WHEN OLD.available = 0 AND NEW.available = 1 BEGIN " +
+                "UPDATE slot_group_occupancy SET occupied = MAX(occupied - 1, 0) WHERE slot_group = " +
+                groupSql("NEW.id") + "; " +
+            "END");
+    }
+
+    /** Copies the tariff's slot types into slot_groups and recounts each group's occupied slots. */
+    private void syncSlotGroups(Connection conn, Statement stmt) throws SQLException {
+        TariffEngine tariff = TariffEngine.current();
+        conn.setAutoCommit(false);
+        try {
+            stmt.executeUpdate("DELETE FROM slot_groups");
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO slot_groups(slot_id, slot_group) VALUES(?, ?)")) {
+                for (int id = 0; id < tariff.slotTypeLimit(); id++) {
+                    int type = tariff.typeOf(id);
+                    if (type != 0) {
+                        ps.setInt(1, id);
+                        ps.setString(2, tariff.typeName(type));
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            recountOccupancy(stmt);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void recountOccupancy(Statement stmt) throws SQLException {
+        stmt.executeUpdate("DELETE FROM slot_group_occupancy");
+        stmt.executeUpdate(
+            "INSERT INTO slot_group_occupancy(slot_group, occupied) " +
+            "SELECT " + groupSql("parking_slots.id") + ", COUNT(*) FROM parking_slots WHERE available = 0 GROUP BY 1");
+    }
+
+    /** The slot group of the slot whose id is the SQL expression {@code slotId}; qualify column names. */
+    private static String groupSql(String slotId) {
+        return "COALESCE((SELECT slot_group FROM slot_groups WHERE slot_id = " + slotId + "), '"
+            + TariffEngine.DEFAULT_TYPE + "')";
+    }
+
+    /** A time column as epoch milliseconds, whichever way the schema stores it; rollups always use milliseconds. */
+    private String millisSql(String column) {
+        return textTimes ? "(CAST(ROUND(julianday(" + column + ") * 86400000) AS INTEGER) - 210866760000000)"
+            : column;
+    }
+
+    private static String bucketSql(String millis, long size) {
+        return "(" + millis + " - " + millis + " % " + size + ")";
+    }
+
+    /**
+     * Rebuilds version 0 tables in the current schema: INTEGER epoch-millisecond
+     * times (the ISO text is converted in SQL) and INTEGER paise instead of
+     * REAL rupees. Indexes and triggers on the old tables are dropped with
+     * them and recreated by the caller. Returns false, leaving the database
+     * as it was, if anything fails.
+     */
+    private boolean migrateSchema(Connection conn, Statement stmt) throws SQLException {
+        // julianday() counts milliseconds internally; this undoes its epoch offset exactly.
+        String slotIn = "CASE WHEN in_time IS NULL OR in_time = '' THEN NULL " +
+            "ELSE CAST(ROUND(julianday(in_time) * 86400000) AS INTEGER) - 210866760000000 END";
+        String bookingIn = "CAST(ROUND(julianday(in_time) * 86400000) AS INTEGER) - 210866760000000";
+        String bookingOut = "CAST(ROUND(julianday(out_time) * 86400000) AS INTEGER) - 210866760000000";
+
+        long start = System.currentTimeMillis();
+        conn.setAutoCommit(false);
+        try {
+            long sequence = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'bookings'")) {
+                if (rs.next()) {
+                    sequence = rs.getLong(1);
+                }
+            }
+
+            stmt.executeUpdate(
+                "CREATE TABLE parking_slots_new (" +
+                    "id INTEGER PRIMARY KEY," +
+                    "available INTEGER NOT NULL DEFAULT 1," +
+                    "booked_by TEXT," +
+                    "vehicle TEXT," +
+                    "in_time INTEGER," +
+                    "surge_percent INTEGER NOT NULL DEFAULT 100" +
+                ")");
+            stmt.executeUpdate(
+                "INSERT INTO parking_slots_new(id, available, booked_by, vehicle, in_time, surge_percent) " +
+                "SELECT id, available, booked_by, vehicle, " + slotIn + ", surge_percent FROM parking_slots");
+            stmt.executeUpdate("DROP TABLE parking_slots");
+            stmt.executeUpdate("ALTER TABLE parking_slots_new RENAME TO parking_slots");
+
+            stmt.executeUpdate(
+                "CREATE TABLE bookings_new (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "slot_id INTEGER NOT NULL," +
+                    "user TEXT NOT NULL," +
+                    "vehicle TEXT NOT NULL," +
+                    "in_time INTEGER NOT NULL," +
+                    "out_time INTEGER NOT NULL," +
+                    "cost_paise INTEGER NOT NULL," +
+                    "surge_percent INTEGER NOT NULL DEFAULT 100," +
+                    "FOREIGN KEY(slot_id) REFERENCES parking_slots(id)" +
+                ")");
+            int migrated = stmt.executeUpdate(
+                "INSERT INTO bookings_new(id, slot_id, user, vehicle, in_time, out_time, cost_paise, surge_percent) " +
+                "SELECT id, slot_id, user, vehicle, " + bookingIn + ", " + bookingOut + ", " +
+                "CAST(ROUND(cost * 100) AS INTEGER), surge_percent FROM bookings");
+            stmt.executeUpdate("DROP TABLE bookings");
+            stmt.executeUpdate("ALTER TABLE bookings_new RENAME TO bookings");
+            if (sequence > 0 && stmt.executeUpdate(
+                    "UPDATE sqlite_sequence SET seq = MAX(seq, " + sequence + ") WHERE name = 'bookings'") == 0) {
+                stmt.executeUpdate("INSERT INTO sqlite_sequence(name, seq) VALUES('bookings', " + sequence + ")");
+            }
+
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            conn.commit();
+            System.out.println("Migrated " + migrated + " bookings to schema version " + SCHEMA_VERSION
+                + " (epoch-millisecond times, paise costs) in " + (System.currentTimeMillis() - start) + " ms");
+            return true;
+        } catch (SQLException e) {
+            conn.rollback();
+            System.err.println("WARNING: Schema migration failed; keeping schema version 0.");
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /** Binds a time the way the schema stores it, truncated to the millisecond in both modes. */
+    private void bindTime(PreparedStatement ps, int index, LocalDateTime time) throws SQLException {
+        if (time == null) {
+            ps.setNull(index, textTimes ? Types.VARCHAR : Types.INTEGER);
+        } else if (textTimes) {
+            ps.setString(index, DF.format(time.truncatedTo(ChronoUnit.MILLIS)));
+        } else {
+            ps.setLong(index, DataModels.toEpochMillis(time));
+        }
+    }
+
+    private long readMillis(ResultSet rs, int column) throws SQLException {
+        return textTimes ? DataModels.toEpochMillis(LocalDateTime.parse(rs.getString(column), DF)) : rs.getLong(column);
+    }
+
+    private LocalDateTime readTime(ResultSet rs, String column) throws SQLException {
+        if (textTimes) {
+            String text = rs.getString(column);
+            return (text == null || text.isEmpty()) ? null : LocalDateTime.parse(text, DF);
+        }
+        long millis = rs.getLong(column);
+        return rs.wasNull() ? null : DataModels.fromEpochMillis(millis);
+    }
+
+    @Override
+    public String name() {
+        return "sqlite";
+    }
+
+    public ConnectionPool.Stats getPoolStats() {
+        return pool == null ? null : pool.getStats();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (pool == null) return;
+        System.out.println("Closing database connections (" + pool.getStats() + ")");
+        pool.close();
+        pool = null;
+        databaseAvailable = false;
+    }
+
+    @Override
+    public void ensureMinimumSlots(int minimumSlots) {
+        if (!databaseAvailable) return;
+        
+        int existingSlots = countSlots();
+        if (existingSlots >= minimumSlots) {
+            return;
+        }
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            PreparedStatement ps = lease.prepare(
+                "INSERT OR IGNORE INTO parking_slots(id, available) VALUES(?, 1)");
+            for (int id = existingSlots + 1; id <= minimumSlots; id++) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Failed to ensure minimum slots: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<DataModels.ParkingSlot> fetchAllSlots() {
+        List<DataModels.ParkingSlot> slots = new ArrayList<>();
+        if (!databaseAvailable) return slots;
+
+        try (ConnectionPool.Lease lease = pool.read();
+             ResultSet rs = lease.prepare(SELECT_SLOTS_SQL + " ORDER BY id").executeQuery()) {
+
+            while (rs.next()) {
+                slots.add(readSlot(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch parking slots: " + e.getMessage());
+        }
+
+        return slots;
+    }
+
+    private DataModels.ParkingSlot readSlot(ResultSet rs) throws SQLException {
+        DataModels.ParkingSlot slot = new DataModels.ParkingSlot(rs.getInt("id"));
+        slot.available = rs.getInt("available") == 1;
+        slot.bookedBy = rs.getString("booked_by");
+        slot.vehicle = rs.getString("vehicle");
+        slot.inTime = readTime(rs, "in_time");
+        slot.surgePercent = rs.getInt("surge_percent");
+        return slot;
+    }
+
+    /**
+     * Reads everything that changed after {@code sinceVersion} (slots) and
+     * {@code afterBookingId} (bookings) in one consistent snapshot. A negative
+     * {@code sinceVersion} loads every slot. Returns null if the read failed.
+     */
+    @Override
+    public ChangeSet fetchChangesSince(long sinceVersion, long afterBookingId) {
+        if (!databaseAvailable) return null;
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+
+            ChangeSet changes = new ChangeSet();
+            try (ResultSet rs = lease.prepare(
+                    "SELECT COALESCE((SELECT MAX(version) FROM change_log), 0), " +
+                    "COALESCE((SELECT MAX(id) FROM bookings), 0), " +
+                    "COALESCE((SELECT version FROM change_log WHERE table_name = 'bookings' AND row_id = 0), 0)")
+                    .executeQuery()) {
+                rs.next();
+                changes.version = rs.getLong(1);
+                changes.lastBookingId = rs.getLong(2);
+                changes.bookingsReset = rs.getLong(3) > sinceVersion && sinceVersion >= 0;
+            }
+
+            if (sinceVersion < 0) {
+                try (ResultSet rs = lease.prepare(SELECT_SLOTS_SQL + " ORDER BY id").executeQuery()) {
+                    while (rs.next()) {
+                        changes.slots.add(readSlot(rs));
+                    }
+                }
+            } else if (changes.version > sinceVersion) {
+                PreparedStatement ps = lease.prepare(
+                    SELECT_SLOTS_SQL + " WHERE id IN (SELECT row_id FROM change_log " +
+                    "WHERE table_name = 'parking_slots' AND version > ?) ORDER BY id");
+                ps.setLong(1, sinceVersion);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        changes.slots.add(readSlot(rs));
+                    }
+                }
+            }
+
+            long fromBookingId = changes.bookingsReset ? 0 : afterBookingId;
+            if (fromBookingId >= 0 && changes.lastBookingId > fromBookingId) {
+                PreparedStatement ps = lease.prepare(
+                    selectBookingsSql + " WHERE id > ? ORDER BY id");
+                ps.setLong(1, fromBookingId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        changes.bookings.add(readBooking(rs));
+                    }
+                }
+            }
+
+            conn.commit();
+            return changes;
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch changes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Looks up the slot occupied by {@code user}/{@code vehicle} via the occupant index, or null. */
+    @Override
+    public DataModels.ParkingSlot fetchSlotByOccupant(String user, String vehicle) {
+        if (!databaseAvailable) return null;
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                SELECT_SLOTS_SQL + " WHERE available = 0 AND booked_by = ? AND vehicle = ? LIMIT 1");
+            ps.setString(1, user);
+            ps.setString(2, vehicle);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? readSlot(rs) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to look up slot by occupant: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void insertSlot(int id) {
+        if (!databaseAvailable) return;
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement ps = lease.prepare("INSERT INTO parking_slots(id, available) VALUES(?, 1)");
+            ps.setInt(1, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to insert parking slot: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void updateSlot(DataModels.ParkingSlot slot) {
+        if (!databaseAvailable) return;
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement ps = lease.prepare(UPDATE_SLOT_SQL);
+            bindSlotUpdate(ps, slot);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to update parking slot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Occupies the slot only if it is still free. Returns 1 if the claim won,
+     * 0 if another writer got there first and -1 if the update failed.
+     */
+    @Override
+    public int claimSlot(DataModels.ParkingSlot slot) {
+        if (!databaseAvailable) return -1;
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement ps = lease.prepare(
+                "UPDATE parking_slots SET available = 0, booked_by = ?, vehicle = ?, in_time = ?, " +
+                "surge_percent = ? WHERE id = ? AND available = 1");
+            ps.setString(1, slot.bookedBy);
+            ps.setString(2, slot.vehicle);
+            bindTime(ps, 3, slot.inTime);
+            ps.setInt(4, slot.surgePercent);
+            ps.setInt(5, slot.id);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to claim parking slot: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Frees the slot and records {@code booking} in one transaction, but only
+     * if the slot is still held by the same user and vehicle. Returns 1 on
+     * success, 0 if the slot had changed hands and -1 if the write failed.
+     */
+    @Override
+    public int releaseSlot(DataModels.ParkingSlot occupied, DataModels.Booking booking) {
+        if (!databaseAvailable) return -1;
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+
+            PreparedStatement ps = lease.prepare(
+                "UPDATE parking_slots SET available = 1, booked_by = NULL, vehicle = NULL, in_time = NULL, " +
+                "surge_percent = 100 WHERE id = ? AND available = 0 AND booked_by IS ? AND vehicle IS ?");
+            ps.setInt(1, occupied.id);
+            ps.setString(2, occupied.bookedBy);
+            ps.setString(3, occupied.vehicle);
+            if (ps.executeUpdate() == 0) {
+                conn.rollback();
+                return 0;
+            }
+
+            PreparedStatement insert = lease.prepare(insertBookingSql);
+            bindBooking(insert, booking);
+            insert.executeUpdate();
+
+            conn.commit();
+            return 1;
+        } catch (SQLException e) {
+            System.err.println("Failed to release parking slot: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public int replaceSlot(DataModels.ParkingSlot expected, DataModels.ParkingSlot slot) {
+        if (!databaseAvailable) return -1;
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement ps = lease.prepare(UPDATE_SLOT_SQL +
+                " AND available = ? AND (available = 1 OR (booked_by IS ? AND vehicle IS ?))");
+            bindSlotUpdate(ps, slot);
+            ps.setInt(7, expected.available ? 1 : 0);
+            ps.setString(8, expected.bookedBy);
+            ps.setString(9, expected.vehicle);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to replace parking slot: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private void bindSlotUpdate(PreparedStatement ps, DataModels.ParkingSlot slot) throws SQLException {
+        ps.setInt(1, slot.available ? 1 : 0);
+
+        if (slot.bookedBy == null) {
+            ps.setNull(2, Types.VARCHAR);
+        } else {
+            ps.setString(2, slot.bookedBy);
+        }
+
+        if (slot.vehicle == null) {
+            ps.setNull(3, Types.VARCHAR);
+        } else {
+            ps.setString(3, slot.vehicle);
+        }
+
+        bindTime(ps, 4, slot.inTime);
+        ps.setInt(5, slot.surgePercent);
+
+        ps.setInt(6, slot.id);
+    }
+
+    @Override
+    public List<DataModels.Booking> fetchAllBookings() {
+        if (!databaseAvailable) return new ArrayList<>();
+        List<DataModels.Booking> bookings = new ArrayList<>();
+
+        try (ConnectionPool.Lease lease = pool.read();
+             ResultSet rs = lease.prepare(selectBookingsSql + " ORDER BY id DESC").executeQuery()) {
+
+            while (rs.next()) {
+                bookings.add(readBooking(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch bookings: " + e.getMessage());
+        }
+
+        return bookings;
+    }
+
+    /**
+     * Up to {@code limit} bookings with an id below {@code beforeId}, newest
+     * first. Seeks straight to the key, so paging stays cheap however deep
+     * into the history it goes. Returns null on error.
+     */
+    @Override
+    public List<DataModels.Booking> fetchBookingsBefore(long beforeId, int limit) {
+        if (!databaseAvailable) return null;
+        List<DataModels.Booking> bookings = new ArrayList<>(limit);
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(selectBookingsSql + " WHERE id < ? ORDER BY id DESC LIMIT ?");
+            ps.setLong(1, beforeId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    bookings.add(readBooking(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch bookings page: " + e.getMessage());
+            return null;
+        }
+
+        return bookings;
+    }
+
+    /**
+     * Like {@link #fetchBookingsBefore} but positioned by row offset, for
+     * jumps to a page whose starting key is not known yet. Returns null on error.
+     */
+    @Override
+    public List<DataModels.Booking> fetchBookingsAt(int offset, int limit) {
+        if (!databaseAvailable) return null;
+        List<DataModels.Booking> bookings = new ArrayList<>(limit);
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(selectBookingsSql + " ORDER BY id DESC LIMIT ? OFFSET ?");
+            ps.setInt(1, limit);
+            ps.setInt(2, offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    bookings.add(readBooking(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch bookings page: " + e.getMessage());
+            return null;
+        }
+
+        return bookings;
+    }
+
+    /** A vehicle's most recent {@code limit} bookings, newest first. Returns null on error. */
+    @Override
+    public List<DataModels.Booking> fetchBookingsForVehicle(String vehicle, int limit) {
+        if (!databaseAvailable) return null;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                selectBookingsSql + " WHERE vehicle = ? ORDER BY out_time DESC LIMIT ?");
+            ps.setString(1, vehicle);
+            ps.setInt(2, limit);
+            return readBookings(ps);
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch vehicle history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** A user's most recent {@code limit} bookings, newest first. Returns null on error. */
+    @Override
+    public List<DataModels.Booking> fetchBookingsForUser(String user, int limit) {
+        if (!databaseAvailable) return null;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                selectBookingsSql + " WHERE user = ? ORDER BY out_time DESC LIMIT ?");
+            ps.setString(1, user);
+            ps.setInt(2, limit);
+            return readBookings(ps);
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch user history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** The most recent {@code limit} bookings of one slot, newest first. Returns null on error. */
+    @Override
+    public List<DataModels.Booking> fetchBookingsForSlot(int slotId, int limit) {
+        if (!databaseAvailable) return null;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                selectBookingsSql + " WHERE slot_id = ? ORDER BY out_time DESC LIMIT ?");
+            ps.setInt(1, slotId);
+            ps.setInt(2, limit);
+            return readBookings(ps);
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch slot history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Bookings that ended in {@code [from, to)}, oldest first. Returns null on error. */
+    @Override
+    public List<DataModels.Booking> fetchBookingsBetween(LocalDateTime from, LocalDateTime to) {
+        if (!databaseAvailable) return null;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                selectBookingsSql + " WHERE out_time >= ? AND out_time < ? ORDER BY out_time");
+            bindTime(ps, 1, from);
+            bindTime(ps, 2, to);
+            return readBookings(ps);
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch bookings in range: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads in rowid order, which is close to out_time order because bookings
+     * are written when they end, so the table is scanned sequentially instead
+     * of being looked up row by row through the out_time index. The index only
+     * finds where the first chunk of a window starts.
+     */
+    @Override
+    public boolean fetchBookingChunk(LocalDateTime from, LocalDateTime to, long afterId,
+                                     ParkingStorage.BookingChunk chunk) {
+        chunk.size = 0;
+        if (!databaseAvailable) return false;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            if (afterId <= 0 || chunk.throughId <= 0) {
+                PreparedStatement bounds = lease.prepare(
+                    "SELECT MIN(id), MAX(id) FROM bookings WHERE out_time >= ? AND out_time < ?");
+                bindTime(bounds, 1, from);
+                bindTime(bounds, 2, to);
+                try (ResultSet rs = bounds.executeQuery()) {
+                    if (!rs.next() || rs.getObject(1) == null) return true;
+                    afterId = Math.max(afterId, rs.getLong(1) - 1);
+                    chunk.throughId = rs.getLong(2);
+                }
+            }
+            PreparedStatement ps = lease.prepare("SELECT id, slot_id, in_time, out_time, " + costPaiseSql
+                + ", surge_percent" + (chunk.hasNames() ? ", user, vehicle" : "")
+                + " FROM bookings WHERE id > ? AND id <= ? AND +out_time >= ? AND +out_time < ? ORDER BY id LIMIT ?");
+            ps.setLong(1, afterId);
+            ps.setLong(2, chunk.throughId);
+            bindTime(ps, 3, from);
+            bindTime(ps, 4, to);
+            ps.setInt(5, chunk.capacity());
+            try (ResultSet rs = ps.executeQuery()) {
+                boolean names = chunk.hasNames();
+                while (rs.next()) {
+                    chunk.add(rs.getLong(1), rs.getInt(2), readMillis(rs, 3), readMillis(rs, 4),
+                        rs.getLong(5), rs.getInt(6), names ? rs.getString(7) : null, names ? rs.getString(8) : null);
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch bookings chunk: " + e.getMessage());
+            chunk.size = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Total cost in paise of the bookings that ended in {@code [from, to)}.
+     * Answered from the out_time index alone; integer sums are exact. Returns
+     * -1 on error.
+     */
+    @Override
+    public long revenueBetween(LocalDateTime from, LocalDateTime to) {
+        if (!databaseAvailable) return -1;
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                "SELECT COALESCE(SUM(" + costPaiseSql + "), 0) FROM bookings WHERE out_time >= ? AND out_time < ?");
+            bindTime(ps, 1, from);
+            bindTime(ps, 2, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to sum revenue: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private List<DataModels.Booking> readBookings(PreparedStatement ps) throws SQLException {
+        List<DataModels.Booking> bookings = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                bookings.add(readBooking(rs));
+            }
+        }
+        return bookings;
+    }
+
+    @Override
+    public List<Rollup> fetchRollups(boolean daily, LocalDateTime from, LocalDateTime to) {
+        if (!databaseAvailable) return null;
+        List<Rollup> rows = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement ps = lease.prepare(
+                "SELECT bucket, slot_group, revenue_paise, bookings, dwell_minutes, peak_occupied FROM "
+                + ROLLUP_TABLES[daily ? 1 : 0] + " WHERE bucket >= ? AND bucket < ? ORDER BY bucket, slot_group");
+            ps.setLong(1, DataModels.toEpochMillis(from));
+            ps.setLong(2, DataModels.toEpochMillis(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Rollup rollup = new Rollup(rs.getLong(1), rs.getString(2));
+                    rollup.revenuePaise = rs.getLong(3);
+                    rollup.bookings = rs.getLong(4);
+                    rollup.dwellMinutes = rs.getLong(5);
+                    rollup.peakOccupied = rs.getInt(6);
+                    rows.add(rollup);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch rollups: " + e.getMessage());
+            return null;
+        }
+        return rows;
+    }
+
+    /**
+     * The backfill for databases that had bookings before the rollups existed
+     * (or whose slot types changed). Totals are regrouped in SQL; peaks come
+     * from a {@link RollupSweep} over check-ins and check-outs that SQLite
+     * sorts, so the history is streamed, not loaded. All in one transaction.
+     */
+    @Override
+    public long rebuildRollups() {
+        if (!databaseAvailable) return -1;
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            String in = millisSql("in_time");
+            String out = millisSql("out_time");
+            PreparedStatement[] peaks = new PreparedStatement[ROLLUP_TABLES.length];
+            for (int i = 0; i < ROLLUP_TABLES.length; i++) {
+                stmt.executeUpdate("DELETE FROM " + ROLLUP_TABLES[i]);
+                stmt.executeUpdate(
+                    "INSERT INTO " + ROLLUP_TABLES[i] + "(bucket, slot_group, revenue_paise, bookings, dwell_minutes) " +
+                    "SELECT " + bucketSql(out, ROLLUP_SIZES[i]) + ", " + groupSql("bookings.slot_id") + ", SUM(" + costPaiseSql
+                    + "), COUNT(*), SUM((" + out + " - " + in + ") / 60000) FROM bookings GROUP BY 1, 2");
+                peaks[i] = lease.prepare(
+                    "INSERT INTO " + ROLLUP_TABLES[i] + "(bucket, slot_group, peak_occupied) VALUES(?, ?, ?) " +
+                    "ON CONFLICT(bucket, slot_group) DO UPDATE SET peak_occupied = MAX(peak_occupied, excluded.peak_occupied)");
+            }
+
+            int[] pending = new int[1];
+            RollupSweep sweep = new RollupSweep((daily, bucket, group, occupied) -> {
+                try {
+                    PreparedStatement ps = peaks[daily ? 1 : 0];
+                    ps.setLong(1, bucket);
+                    ps.setString(2, group);
+                    ps.setInt(3, occupied);
+                    ps.addBatch();
+                    if (++pending[0] % ROLLUP_BATCH == 0) {
+                        ps.executeBatch();
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // Check-outs sort before check-ins at the same instant.
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT t, delta, slot_group FROM (" +
+                        "SELECT " + in + " AS t, 1 AS delta, " + groupSql("bookings.slot_id") + " AS slot_group FROM bookings " +
+                        "UNION ALL SELECT " + out + ", -1, " + groupSql("bookings.slot_id") + " FROM bookings " +
+                        "UNION ALL SELECT " + in + ", 1, " + groupSql("parking_slots.id") + " FROM parking_slots " +
+                        "WHERE available = 0 AND in_time IS NOT NULL) ORDER BY t, delta")) {
+                while (rs.next()) {
+                    if (rs.getInt(2) < 0) {
+                        sweep.checkOut(rs.getString(3));
+                    } else {
+                        sweep.checkIn(rs.getLong(1), rs.getString(3));
+                    }
+                }
+            }
+            sweep.finish();
+            for (PreparedStatement ps : peaks) {
+                ps.executeBatch();
+            }
+            recountOccupancy(stmt);
+
+            long count;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM bookings")) {
+                count = rs.next() ? rs.getLong(1) : 0;
+            }
+            conn.commit();
+            return count;
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("Failed to rebuild rollups: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public int countBookings() {
+        if (!databaseAvailable) return 0;
+        try (ConnectionPool.Lease lease = pool.read();
+             ResultSet rs = lease.prepare("SELECT COUNT(*) FROM bookings").executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("Failed to count bookings: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private DataModels.Booking readBooking(ResultSet rs) throws SQLException {
+        LocalDateTime inTime = readTime(rs, "in_time");
+        LocalDateTime outTime = readTime(rs, "out_time");
+
+        DataModels.Booking booking = new DataModels.Booking(
+            rs.getInt("slot_id"),
+            rs.getString("user"),
+            rs.getString("vehicle"),
+            inTime,
+            outTime,
+            rs.getLong("cost_paise"));
+        booking.id = rs.getLong("id");
+        booking.surgePercent = rs.getInt("surge_percent");
+        return booking;
+    }
+
+    @Override
+    public void insertBooking(DataModels.Booking booking) {
+        if (!databaseAvailable) return;
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement ps = lease.prepare(insertBookingSql);
+            bindBooking(ps, booking);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to insert booking: " + e.getMessage());
+        }
+    }
+
+    private void bindBooking(PreparedStatement ps, DataModels.Booking booking) throws SQLException {
+        ps.setInt(1, booking.slotId);
+        ps.setString(2, booking.user);
+        ps.setString(3, booking.vehicle);
+        bindTime(ps, 4, booking.inTime);
+        bindTime(ps, 5, booking.outTime);
+        if (textTimes) {
+            ps.setDouble(6, booking.costPaise / 100.0);
+        } else {
+            ps.setLong(6, booking.costPaise);
+        }
+        ps.setInt(7, booking.surgePercent);
+    }
+
+    /**
+     * Writes a batch of queued changes in a single transaction: the reset if
+     * asked for, then new slots, slot updates and completed bookings. Returns
+     * false if nothing was committed so the caller can retry the batch.
+     */
+    @Override
+    public boolean applyBatch(boolean reset,
+                              Collection<Integer> newSlotIds,
+                              Collection<DataModels.ParkingSlot> slots,
+                              Collection<DataModels.Booking> bookings) {
+        if (!databaseAvailable) return false;
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            if (reset) {
+                clearAll(lease);
+            }
+
+            if (!newSlotIds.isEmpty()) {
+                PreparedStatement ps = lease.prepare("INSERT OR IGNORE INTO parking_slots(id, available) VALUES(?, 1)");
+                for (int id : newSlotIds) {
+                    ps.setInt(1, id);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            if (!slots.isEmpty()) {
+                PreparedStatement ps = lease.prepare(UPDATE_SLOT_SQL);
+                for (DataModels.ParkingSlot slot : slots) {
+                    bindSlotUpdate(ps, slot);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            if (!bookings.isEmpty()) {
+                PreparedStatement ps = lease.prepare(insertBookingSql);
+                for (DataModels.Booking booking : bookings) {
+                    bindBooking(ps, booking);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Failed to write batch: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void resetSlotsAndBookings() {
+        if (!databaseAvailable) return;
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            clearAll(lease);
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Failed to reset slots and bookings: " + e.getMessage());
+        }
+    }
+
+    private void clearAll(ConnectionPool.Lease lease) throws SQLException {
+        lease.prepare("DELETE FROM bookings").executeUpdate();
+        for (String table : ROLLUP_TABLES) {
+            lease.prepare("DELETE FROM " + table).executeUpdate();
+        }
+        lease.prepare(
+            "INSERT OR REPLACE INTO change_log(table_name, row_id) VALUES('bookings', 0)").executeUpdate();
+        lease.prepare(
+            "UPDATE parking_slots " +
+            "SET available = 1, booked_by = NULL, vehicle = NULL, in_time = NULL, surge_percent = 100")
+            .executeUpdate();
+    }
+
+    private int countSlots() {
+        if (!databaseAvailable) return 0;
+        try (ConnectionPool.Lease lease = pool.read();
+             ResultSet rs = lease.prepare("SELECT COUNT(*) FROM parking_slots").executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("Failed to count parking slots: " + e.getMessage());
+            return 0;
+        }
+    }
+}
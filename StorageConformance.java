@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the same checks against every {@link ParkingStorage} backend and times
+ * a small claim/release workload on each. Usage:
+ *
+ *   java StorageConformance [sqlite|memory|journal ...]
+ *
+ * Exits with status 1 if any backend fails a check.
+ */
+public class StorageConformance {
+
+    private static final int BENCH_CYCLES = 2000;
+
+    private interface Opener {
+        ParkingStorage open() throws IOException;
+    }
+
+    private int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        List<String> kinds = args.length > 0 ? Arrays.asList(args) : Arrays.asList("memory", "journal", "sqlite");
+        Path dir = Files.createTempDirectory("parking-conformance");
+        StorageConformance suite = new StorageConformance();
+
+        for (String kind : kinds) {
+            Opener opener;
+            switch (kind) {
+                case "memory":
+                    opener = MemoryStorage::new;
+                    break;
+                case "journal":
+                    Path journal = dir.resolve("conformance.journal");
+                    opener = () -> JournalStorage.open(journal);
+                    break;
+                case "sqlite":
+                    String url = "jdbc:sqlite:" + dir.resolve("conformance.db");
+                    opener = () -> {
+                        ParkingStorage sqlite = SqliteStorage.open(url);
+                        if (sqlite == null) throw new IOException("could not open " + url);
+                        return sqlite;
+                    };
+                    break;
+                default:
+                    System.out.println("✗ Unknown backend " + kind);
+                    suite.failures++;
+                    continue;
+            }
+            System.out.println("\n=== " + kind + " ===");
+            suite.run(kind, opener);
+        }
+
+        System.out.println(suite.failures == 0 ? "\nAll checks passed" : "\n" + suite.failures + " check(s) failed");
+        System.exit(suite.failures == 0 ? 0 : 1);
+    }
+
+    private void run(String kind, Opener opener) {
+        try {
+            ParkingStorage storage = opener.open();
+            check(storage);
+            if (!"memory".equals(kind)) {
+                storage.close();
+                checkReopen(opener.open());
+            } else {
+                storage.close();
+            }
+            checkClosed(storage);
+            bench(opener.open());
+        } catch (IOException | RuntimeException e) {
+            fail("backend threw " + e);
+            e.printStackTrace();
+        }
+    }
+
+    private void check(ParkingStorage s) {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 10, 0, 0, 123_456_789);
+
+        s.ensureMinimumSlots(5);
+        s.ensureMinimumSlots(3);
+        List<DataModels.ParkingSlot> all = s.fetchAllSlots();
+        expect("ensureMinimumSlots creates ids 1..5",
+            all.size() == 5 && all.get(0).id == 1 && all.get(4).id == 5 && all.stream().allMatch(x -> x.available));
+
+        ParkingStorage.ChangeSet full = s.fetchChangesSince(-1, 0);
+        expect("full change set returns every slot", full != null && full.slots.size() == 5 && full.bookings.isEmpty());
+        long version = full == null ? 0 : full.version;
+
+        DataModels.ParkingSlot surged = occupied(2, "alice", "KA-01", t);
+        surged.surgePercent = 125;
+        expect("claim of a free slot wins", s.claimSlot(surged) == 1);
+        expect("second claim conflicts", s.claimSlot(occupied(2, "bob", "KA-02", t)) == 0);
+        expect("claim of an unknown slot conflicts", s.claimSlot(occupied(99, "bob", "KA-02", t)) == 0);
+        DataModels.ParkingSlot held = s.fetchSlotByOccupant("alice", "KA-01");
+        expect("occupant lookup finds the claimed slot", held != null && held.id == 2 && !held.available);
+        expect("times are kept to the millisecond",
+            held != null && t.withNano(123_000_000).equals(held.inTime));
+        expect("claim keeps the surge percent", held != null && held.surgePercent == 125);
+
+        ParkingStorage.ChangeSet delta = s.fetchChangesSince(version, 0);
+        expect("incremental change set holds only the changed slot",
+            delta != null && delta.slots.size() == 1 && delta.slots.get(0).id == 2 && delta.version > version);
+        version = delta == null ? version : delta.version;
+
+        DataModels.Booking first = new DataModels.Booking(2, "alice", "KA-01", t, t.plusHours(2), 4000);
+        expect("release by the wrong vehicle conflicts", s.releaseSlot(occupied(2, "alice", "KA-99", t), first) == 0);
+        expect("release by the holder succeeds", s.releaseSlot(occupied(2, "alice", "KA-01", t), first) == 1);
+        expect("released slot is free", s.fetchSlotByOccupant("alice", "KA-01") == null);
+        expect("release does not change the caller's booking", first.id == 0);
+
+        DataModels.ParkingSlot free = new DataModels.ParkingSlot(2);
+        expect("replace of a slot that has changed conflicts",
+            s.replaceSlot(occupied(2, "alice", "KA-01", t), occupied(2, "bob", "KA-02", t)) == 0);
+        expect("replace of a slot as expected succeeds", s.replaceSlot(free, occupied(2, "bob", "KA-02", t)) == 1);
+        expect("replace by the wrong occupant conflicts", s.replaceSlot(occupied(2, "bob", "KA-99", t), free) == 0);
+        expect("replace by the occupant frees the slot",
+            s.replaceSlot(occupied(2, "bob", "KA-02", t), free) == 1 && s.fetchSlotByOccupant("bob", "KA-02") == null);
+
+        boolean batched = s.applyBatch(false, Collections.singletonList(6),
+            Collections.singletonList(occupied(4, "carol", "KA-03", t)),
+            Arrays.asList(
+                new DataModels.Booking(1, "bob", "KA-02", t.plusHours(1), t.plusHours(3), 4000),
+                new DataModels.Booking(3, "alice", "KA-01", t.plusHours(4), t.plusHours(5), 2000)));
+        expect("batch commits", batched);
+        expect("batch inserted the new slot", s.fetchAllSlots().size() == 6);
+        expect("batch applied the slot update", s.fetchSlotByOccupant("carol", "KA-03") != null);
+        expect("three bookings recorded", s.countBookings() == 3);
+
+        delta = s.fetchChangesSince(version, 0);
+        expect("change set lists new bookings oldest first with ids",
+            delta != null && delta.bookings.size() == 3 && delta.bookings.get(0).id > 0
+                && delta.bookings.get(0).id < delta.bookings.get(2).id
+                && delta.lastBookingId == delta.bookings.get(2).id);
+        long lastId = delta == null ? 0 : delta.lastBookingId;
+        ParkingStorage.ChangeSet skipped = s.fetchChangesSince(-1, -1);
+        expect("a full load can skip the booking history",
+            skipped != null && skipped.bookings.isEmpty() && skipped.lastBookingId == lastId && skipped.slots.size() == 6);
+
+        List<DataModels.Booking> newest = s.fetchBookingsBefore(Long.MAX_VALUE, 2);
+        expect("keyset page returns the newest bookings first",
+            newest != null && newest.size() == 2 && newest.get(0).id == lastId && newest.get(1).id < lastId);
+        List<DataModels.Booking> rest = newest == null ? null : s.fetchBookingsBefore(newest.get(1).id, 2);
+        expect("next keyset page continues below the last id", rest != null && rest.size() == 1);
+        List<DataModels.Booking> offset = s.fetchBookingsAt(1, 5);
+        expect("offset page skips the newest", offset != null && offset.size() == 2 && offset.get(0).id < lastId);
+        expect("fetchAllBookings is newest first",
+            s.fetchAllBookings().size() == 3 && s.fetchAllBookings().get(0).id == lastId);
+
+        List<DataModels.Booking> alice = s.fetchBookingsForUser("alice", 10);
+        expect("user history is newest out time first",
+            alice != null && alice.size() == 2 && alice.get(0).outTime.isAfter(alice.get(1).outTime));
+        List<DataModels.Booking> vehicle = s.fetchBookingsForVehicle("KA-02", 10);
+        expect("vehicle history", vehicle != null && vehicle.size() == 1 && vehicle.get(0).slotId == 1);
+        List<DataModels.Booking> slot = s.fetchBookingsForSlot(3, 10);
+        expect("slot history", slot != null && slot.size() == 1 && "alice".equals(slot.get(0).user));
+        List<DataModels.Booking> window = s.fetchBookingsBetween(t.plusHours(2), t.plusHours(5));
+        expect("time window is half-open and oldest first",
+            window != null && window.size() == 2 && window.get(0).outTime.isBefore(window.get(1).outTime));
+        ParkingStorage.BookingChunk chunk = new ParkingStorage.BookingChunk(2);
+        boolean read = s.fetchBookingChunk(t.plusHours(2), t.plusHours(6), 0, chunk);
+        long firstId = chunk.ids[0];
+        long firstIn = chunk.inMillis[0];
+        read &= chunk.size == 2 && s.fetchBookingChunk(t.plusHours(2), t.plusHours(6), chunk.ids[1], chunk);
+        expect("a window reads in id-ordered chunks", read && chunk.size == 1 && firstId < chunk.ids[0]
+            && firstIn == DataModels.toEpochMillis(t.withNano(123_000_000)) && chunk.costPaise[0] == 2000);
+        ParkingStorage.BookingChunk named = new ParkingStorage.BookingChunk(3, true);
+        expect("a chunk with names carries users and vehicles", s.fetchBookingChunk(t, t.plusHours(6), 0, named)
+            && named.size == 3 && "alice".equals(named.users[0]) && named.vehicles[2] != null && chunk.users == null);
+        expect("revenue over a window", s.revenueBetween(t, t.plusHours(6)) == 10_000
+            && s.revenueBetween(t.plusHours(3), t.plusHours(5)) == 4_000);
+
+        LocalDateTime day = t.toLocalDate().atStartOfDay();
+        List<ParkingStorage.Rollup> days = s.fetchRollups(true, day, day.plusDays(1));
+        expect("daily rollup totals the bookings that ended that day",
+            days != null && days.size() == 1 && days.get(0).revenuePaise == 10_000 && days.get(0).bookings == 3
+                && days.get(0).dwellMinutes == 300 && days.get(0).peakOccupied >= 1);
+        List<ParkingStorage.Rollup> hours = s.fetchRollups(false, day, day.plusDays(1));
+        expect("hourly rollups split the day by out time",
+            hours != null && hours.stream().mapToLong(r -> r.revenuePaise).sum() == 10_000
+                && hours.stream().filter(r -> r.bookings > 0).count() == 3);
+        expect("rebuilding the rollups reads every booking", s.rebuildRollups() == 3);
+        List<ParkingStorage.Rollup> rebuilt = s.fetchRollups(true, day, day.plusDays(1));
+        expect("rebuilt rollups match the live ones",
+            rebuilt != null && rebuilt.size() == 1 && rebuilt.get(0).revenuePaise == 10_000
+                && rebuilt.get(0).dwellMinutes == 300 && rebuilt.get(0).peakOccupied >= 1);
+
+        boolean resetBatch = s.applyBatch(true, Collections.emptyList(),
+            Collections.singletonList(occupied(2, "erin", "KA-05", t)),
+            Collections.singletonList(new DataModels.Booking(1, "erin", "KA-05", t, t.plusHours(1), 1500)));
+        expect("a reset batch replaces slots and history together", resetBatch && s.countBookings() == 1
+            && s.fetchSlotByOccupant("carol", "KA-03") == null && s.fetchSlotByOccupant("erin", "KA-05") != null);
+
+        s.resetSlotsAndBookings();
+        List<ParkingStorage.Rollup> cleared = s.fetchRollups(true, day, day.plusDays(1));
+        expect("reset clears the rollups", cleared != null && cleared.isEmpty());
+        ParkingStorage.ChangeSet reset = s.fetchChangesSince(version, lastId);
+        expect("reset clears the history", s.countBookings() == 0 && reset != null && reset.bookingsReset);
+        expect("reset frees every slot", s.fetchAllSlots().stream().allMatch(x -> x.available));
+        DataModels.Booking dave = new DataModels.Booking(5, "dave", "KA-04", t, t.plusHours(1), 2500);
+        dave.surgePercent = 125;
+        s.insertBooking(dave);
+        List<DataModels.Booking> after = s.fetchAllBookings();
+        expect("booking ids keep counting up after a reset", after.size() == 1 && after.get(0).id > lastId);
+        expect("booking keeps its surge percent", after.size() == 1 && after.get(0).surgePercent == 125);
+
+        s.insertSlot(7);
+        DataModels.ParkingSlot erin = occupied(7, "erin", "KA-05", t);
+        erin.surgePercent = 150;
+        s.updateSlot(erin);
+        DataModels.ParkingSlot updated = s.fetchSlotByOccupant("erin", "KA-05");
+        expect("insertSlot and updateSlot", updated != null && updated.surgePercent == 150);
+    }
+
+    private void checkReopen(ParkingStorage s) {
+        expect("reopened store has every slot", s.fetchAllSlots().size() == 7);
+        DataModels.ParkingSlot erin = s.fetchSlotByOccupant("erin", "KA-05");
+        expect("reopened store keeps occupancy", erin != null && erin.surgePercent == 150);
+        List<DataModels.Booking> bookings = s.fetchAllBookings();
+        expect("reopened store keeps bookings",
+            bookings.size() == 1 && "dave".equals(bookings.get(0).user) && bookings.get(0).surgePercent == 125);
+        s.close();
+    }
+
+    private void checkClosed(ParkingStorage s) {
+        expect("closed store rejects claims", s.claimSlot(occupied(1, "x", "y", LocalDateTime.now())) == -1);
+        expect("closed store rejects replaces",
+            s.replaceSlot(new DataModels.ParkingSlot(1), occupied(1, "x", "y", LocalDateTime.now())) == -1);
+        expect("closed store returns no change set", s.fetchChangesSince(-1, 0) == null);
+        expect("closed store rejects batches", !s.applyBatch(false, Collections.singletonList(99),
+            Collections.emptyList(), Collections.emptyList()));
+    }
+
+    private void bench(ParkingStorage s) {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 10, 0);
+        s.resetSlotsAndBookings();
+        s.ensureMinimumSlots(100);
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCH_CYCLES; i++) {
+            DataModels.ParkingSlot slot = occupied(i % 100 + 1, "u" + i, "v" + i, t);
+            s.claimSlot(slot);
+            s.releaseSlot(slot, new DataModels.Booking(slot.id, slot.bookedBy, slot.vehicle, t, t.plusHours(1), 2000));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %d claim/release cycles in %.1f ms (%.0f cycles/s)%n",
+            BENCH_CYCLES, elapsed / 1e6, BENCH_CYCLES / (elapsed / 1e9));
+        s.close();
+    }
+
+    private static DataModels.ParkingSlot occupied(int id, String user, String vehicle, LocalDateTime inTime) {
+        DataModels.ParkingSlot slot = new DataModels.ParkingSlot(id);
+        slot.available = false;
+        slot.bookedBy = user;
+        slot.vehicle = vehicle;
+        slot.inTime = inTime;
+        return slot;
+    }
+
+    private void expect(String what, boolean ok) {
+        System.out.println((ok ? "✓ " : "✗ ") + what);
+        if (!ok) {
+            failures++;
+        }
+    }
+
+    private void fail(String what) {
+        expect(what, false);
+    }
+}
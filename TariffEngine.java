@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Prices a stay, in paise. Every started hour is charged at the rate of the weekday
+ * and clock hour it starts in; stays within the grace period are free, each
+ * 24 hours from entry is capped, and slot types scale the rates.
+ *
+ * A tariff is compiled once into prefix sums over the 168 hours of a week,
+ * so {@link #price} is a few array lookups however long the stay and
+ * allocates nothing. The tariff in use is read at startup from
+ * tariff.properties (-Dparking.tariff to change the path); without one the
+ * flat {@link UIComponents#RATE_PER_HOUR} applies. Example:
+ *
+ * <pre>
+ * rate=20                  # rupees per started hour, where no band applies
+ * band.weekday.8-20=30     # all, weekday, weekend or mon..sun; hours 0-24, end exclusive
+ * band.weekend.0-24=15
+ * grace.minutes=10
+ * cap.daily=200            # per 24 hours from entry
+ * type.EV.slots=1-4,9
+ * type.EV.multiplier=1.5   # rates and cap; type.EV.cap overrides the cap
+ * surge.80=1.25            # from 80% occupied, new stays pay 125% of the whole charge
+ * surge.95=1.5
+ * </pre>
+ *
+ * Surge pricing follows occupancy: {@link #surgeNow} reads the lot's
+ * occupancy counters, so a claim locks in the surge of the moment it happens
+ * without scanning the slots, and the stay is charged at that surge.
+ */
+public final class TariffEngine {
+
+    private static final int HOURS_PER_WEEK = 168;
+    private static final long MS_PER_MINUTE = 60_000L;
+    private static final long MS_PER_HOUR = 3_600_000L;
+    private static final long MS_PER_DAY = 86_400_000L;
+    private static final String[] DAYS = {"mon", "tue", "wed", "thu", "fri", "sat", "sun"};
+
+    /** Name of type 0, which every slot not listed under a type.NAME.slots key has. */
+    public static final String DEFAULT_TYPE = "STANDARD";
+
+    /** Slot types a tariff may have, counting {@link #DEFAULT_TYPE}; a type fits in {@link #TYPE_BITS} bits. */
+    public static final int TYPE_BITS = 8;
+    public static final int MAX_TYPES = 1 << TYPE_BITS;
+
+    private static volatile TariffEngine current = loadDefault();
+
+    private final String[] typeNames;
+    // Slot id -> type; ids past the end are type 0.
+    private final int[] typeBySlot;
+    private final long graceMinutes;
+    // All charges in paise.
+    private final long[] caps;
+    // Per type, 2 * 168 + 1 entries: charge for the hours of week [0, i), wrapping once.
+    private final long[] prefix;
+    // Per type, 168 * 8 entries: capped charge for the first k days of a stay starting at hour h.
+    private final long[] dayPrefix;
+    // Occupancy percent (0-100) -> surge percent.
+    private final int[] surgeByOccupancy;
+
+    private TariffEngine(double[] rates, long graceMinutes, double cap, List<String> typeNames,
+                         double[] multipliers, double[] typeCaps, int[] typeBySlot, int[] surgeByOccupancy) {
+        int types = typeNames.size();
+        this.surgeByOccupancy = surgeByOccupancy;
+        this.typeNames = typeNames.toArray(new String[0]);
+        this.typeBySlot = typeBySlot;
+        this.graceMinutes = graceMinutes;
+        this.caps = new long[types];
+        this.prefix = new long[types * (2 * HOURS_PER_WEEK + 1)];
+        this.dayPrefix = new long[types * HOURS_PER_WEEK * 8];
+
+        for (int t = 0; t < types; t++) {
+            double typeCap = Double.isNaN(typeCaps[t]) ? cap * multipliers[t] : typeCaps[t];
+            caps[t] = Double.isInfinite(typeCap) ? Long.MAX_VALUE : Money.ofRupees(typeCap);
+            int base = t * (2 * HOURS_PER_WEEK + 1);
+            for (int i = 0; i < 2 * HOURS_PER_WEEK; i++) {
+                prefix[base + i + 1] = prefix[base + i] + Money.ofRupees(rates[i % HOURS_PER_WEEK] * multipliers[t]);
+            }
+            for (int h = 0; h < HOURS_PER_WEEK; h++) {
+                int row = (t * HOURS_PER_WEEK + h) * 8;
+                for (int k = 0; k < 7; k++) {
+                    int start = (h + 24 * k) % HOURS_PER_WEEK;
+                    dayPrefix[row + k + 1] = dayPrefix[row + k] + Math.min(caps[t], hours(t, start, 24));
+                }
+            }
+        }
+    }
+
+    /** The tariff the dashboards charge. */
+    public static TariffEngine current() {
+        return current;
+    }
+
+    public static void install(TariffEngine tariff) {
+        current = tariff;
+    }
+
+    /** Shorthand for {@code current().price(slotId, in, out)}, in paise, without surge. */
+    public static long cost(int slotId, LocalDateTime in, LocalDateTime out) {
+        return current.price(slotId, in, out);
+    }
+
+    /** What the stay in {@code slot} costs if it ends at {@code out}, at the surge it was claimed at. */
+    public static long cost(DataModels.ParkingSlot slot, LocalDateTime out) {
+        return current.price(slot.id, slot.inTime, out, slot.surgePercent);
+    }
+
+    /** The surge percent a stay starting now is charged at, from the current occupancy. */
+    public static int surgeNow() {
+        return current.surgePercent(DataModels.occupancyPercent());
+    }
+
+    /** One rate around the clock, no grace period, cap or slot types. */
+    public static TariffEngine flat(double ratePerHour) {
+        Properties properties = new Properties();
+        properties.setProperty("rate", Double.toString(ratePerHour));
+        return fromProperties(properties);
+    }
+
+    /** Compiles a tariff in the format shown above; throws IllegalArgumentException if it is malformed. */
+    public static TariffEngine fromProperties(Properties properties) {
+        double[] rates = new double[HOURS_PER_WEEK];
+        Arrays.fill(rates, number(properties, "rate", UIComponents.RATE_PER_HOUR));
+
+        // General bands first, so weekday/weekend and then single days override them.
+        for (String group : new String[] {"all", "weekday", "weekend", "day"}) {
+            for (String key : properties.stringPropertyNames()) {
+                if (!key.startsWith("band.")) continue;
+                String[] parts = key.split("\\.");
+                String days = parts.length == 3 ? parts[1].toLowerCase() : "";
+                int day = Arrays.asList(DAYS).indexOf(days);
+                if (day < 0 && !days.equals("all") && !days.equals("weekday") && !days.equals("weekend")) {
+                    throw new IllegalArgumentException("Bad band " + key);
+                }
+                if (!group.equals(day >= 0 ? "day" : days)) continue;
+                int[] span = range(parts[2], 0, 24, key);
+                double rate = number(properties, key, 0);
+                for (int d = 0; d < 7; d++) {
+                    boolean applies = day >= 0 ? d == day : days.equals("all") || days.equals("weekend") == (d >= 5);
+                    for (int h = span[0]; applies && h < span[1]; h++) {
+                        rates[d * 24 + h] = rate;
+                    }
+                }
+            }
+        }
+
+        List<String> typeNames = new ArrayList<>();
+        typeNames.add(DEFAULT_TYPE);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("type.") && key.endsWith(".slots")) {
+                typeNames.add(key.substring("type.".length(), key.length() - ".slots".length()));
+            }
+        }
+        if (typeNames.size() > MAX_TYPES) {
+            throw new IllegalArgumentException("At most " + (MAX_TYPES - 1) + " type.NAME.slots entries are allowed, not "
+                + (typeNames.size() - 1));
+        }
+        typeNames.subList(1, typeNames.size()).sort(null);
+        double[] multipliers = new double[typeNames.size()];
+        double[] typeCaps = new double[typeNames.size()];
+        Arrays.fill(multipliers, 1);
+        Arrays.fill(typeCaps, Double.NaN);
+        int[] typeBySlot = new int[0];
+        for (int t = 1; t < typeNames.size(); t++) {
+            String name = "type." + typeNames.get(t);
+            multipliers[t] = number(properties, name + ".multiplier", 1);
+            typeCaps[t] = number(properties, name + ".cap", Double.NaN);
+            for (String item : properties.getProperty(name + ".slots").split(",")) {
+                int[] ids = range(item.trim(), 1, 1_000_000, name + ".slots");
+                if (ids[1] >= typeBySlot.length) {
+                    typeBySlot = Arrays.copyOf(typeBySlot, ids[1] + 1);
+                }
+                Arrays.fill(typeBySlot, ids[0], ids[1] + 1, t);
+            }
+        }
+
+        // Each surge.N applies from N% occupied up to the next threshold.
+        TreeMap<Integer, Integer> thresholds = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith("surge.")) continue;
+            int[] from = range(key.substring("surge.".length()), 0, 100, key);
+            double multiplier = number(properties, key, 1);
+            if (from[0] != from[1] || multiplier == 0 || multiplier > 10) {
+                throw new IllegalArgumentException("Bad surge " + key + ": use surge.<percent>=<multiplier up to 10>");
+            }
+            thresholds.put(from[0], (int) Math.round(multiplier * 100));
+        }
+        int[] surge = new int[101];
+        Arrays.fill(surge, 100);
+        thresholds.forEach((from, percent) -> Arrays.fill(surge, from, 101, percent));
+
+        long grace = (long) number(properties, "grace.minutes", 0);
+        double cap = number(properties, "cap.daily", Double.POSITIVE_INFINITY);
+        return new TariffEngine(rates, grace, cap, typeNames, multipliers, typeCaps, typeBySlot, surge);
+    }
+
+    /** Reads and compiles a tariff file; throws IllegalArgumentException if it is malformed. */
+    public static TariffEngine load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+        return fromProperties(properties);
+    }
+
+    /** The charge in paise for a stay in {@code slotId} from {@code in} to {@code out}. */
+    public long price(int slotId, LocalDateTime in, LocalDateTime out) {
+        if (in == null || out == null) return 0;
+        return priceType(typeOf(slotId), DataModels.toEpochMillis(in), DataModels.toEpochMillis(out));
+    }
+
+    /** Like {@link #price(int, LocalDateTime, LocalDateTime)}, scaled by {@code surgePercent} and rounded to the paisa. */
+    public long price(int slotId, LocalDateTime in, LocalDateTime out, int surgePercent) {
+        return surged(price(slotId, in, out), surgePercent);
+    }
+
+    /**
+     * The charge in paise for a stay in a slot of {@code type} (see {@link #typeOf}),
+     * with times as from {@link DataModels#toEpochMillis}.
+     */
+    public long priceType(int type, long inMillis, long outMillis) {
+        long minutes = (outMillis - inMillis) / MS_PER_MINUTE;
+        if (minutes <= graceMinutes) return 0;
+        long billed = (minutes + 59) / 60;
+        long days = billed / 24;
+        int rest = (int) (billed % 24);
+
+        long day = Math.floorDiv(inMillis, MS_PER_DAY);
+        // Day 0 of the epoch was a Thursday; weeks here start on Monday.
+        int start = (int) Math.floorMod(day + 3, 7L) * 24 + (int) (Math.floorMod(inMillis, MS_PER_DAY) / MS_PER_HOUR);
+        int row = (type * HOURS_PER_WEEK + start) * 8;
+        int lastDay = (int) (days % 7);
+        return (days / 7) * dayPrefix[row + 7]
+            + dayPrefix[row + lastDay]
+            + Math.min(caps[type], hours(type, (start + 24 * lastDay) % HOURS_PER_WEEK, rest));
+    }
+
+    /** Surge percent for a lot that is {@code occupancyPercent} (0-100) full. */
+    public int surgePercent(int occupancyPercent) {
+        return surgeByOccupancy[Math.max(0, Math.min(100, occupancyPercent))];
+    }
+
+    /** A surge percent as shown to people, e.g. "×1.25". */
+    public static String surgeLabel(int surgePercent) {
+        return "×" + surgePercent / 100 + "." + (surgePercent % 100 < 10 ? "0" : "") + surgePercent % 100;
+    }
+
+    /** {@code paise} scaled by {@code surgePercent}, rounding half up. */
+    public static long surged(long paise, int surgePercent) {
+        return surgePercent == 100 ? paise : (paise * surgePercent + 50) / 100;
+    }
+
+    /**
+     * The earliest time after {@code nowMillis} at which the price of a stay
+     * that began at {@code inMillis} can differ from its price at
+     * {@code nowMillis}: the end of the grace period or of the current hour.
+     */
+    public long nextChange(long inMillis, long nowMillis) {
+        long minutes = Math.max(0, (nowMillis - inMillis) / MS_PER_MINUTE);
+        long next = minutes <= graceMinutes ? graceMinutes + 1 : (minutes + 59) / 60 * 60 + 1;
+        return inMillis + next * MS_PER_MINUTE;
+    }
+
+    public int typeOf(int slotId) {
+        return slotId >= 0 && slotId < typeBySlot.length ? typeBySlot[slotId] : 0;
+    }
+
+    /** Slot ids from this one up are all of the default type. */
+    public int slotTypeLimit() {
+        return typeBySlot.length;
+    }
+
+    public String typeName(int type) {
+        return typeNames[type];
+    }
+
+    public int typeCount() {
+        return typeNames.length;
+    }
+
+    /** Uncapped charge for {@code count} (at most 168) hours starting at hour of week {@code start}. */
+    private long hours(int type, int start, int count) {
+        int base = type * (2 * HOURS_PER_WEEK + 1);
+        return prefix[base + start + count] - prefix[base + start];
+    }
+
+    private static TariffEngine loadDefault() {
+        Path path = Paths.get(System.getProperty("parking.tariff", "tariff.properties"));
+        if (!Files.exists(path)) {
+            return flat(UIComponents.RATE_PER_HOUR);
+        }
+        try {
+            return load(path);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("WARNING: Failed to load tariff " + path + ". Charging the flat hourly rate.");
+            System.err.println("Error: " + e.getMessage());
+            return flat(UIComponents.RATE_PER_HOUR);
+        }
+    }
+
+    private static double number(Properties properties, String key, double fallback) {
+        String value = properties.getProperty(key);
+        if (value == null) return fallback;
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (number < 0 || Double.isNaN(number)) {
+                throw new IllegalArgumentException(key + " must not be negative");
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number for " + key + ": " + value);
+        }
+    }
+
+    /** Parses "a-b" (or "a", as a-a) within [min, max] with a <= b. */
+    private static int[] range(String text, int min, int max, String key) {
+        String[] ends = text.split("-");
+        try {
+            int from = Integer.parseInt(ends[0].trim());
+            int to = ends.length > 1 ? Integer.parseInt(ends[1].trim()) : from;
+            if (ends.length > 2 || from < min || to > max || from > to) {
+                throw new IllegalArgumentException("Bad range " + text + " in " + key);
+            }
+            return new int[] {from, to};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad range " + text + " in " + key);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Most frequent vehicles, users and slots among the bookings that ended in a
+ * date range. Usage:
+ *
+ *   java TopParkers [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--top n] [--capacity k]
+ *
+ * The range is half-open and defaults to all bookings so far. The history is
+ * streamed in id-ordered chunks through {@link HeavyHitters} summaries of
+ * {@code --capacity} counters (default 1024), so memory stays the same
+ * however many bookings there are; counts are upper bounds, shown with how
+ * far off they can be.
+ */
+public class TopParkers {
+
+    private static final int CHUNK = 50_000;
+
+    public static void main(String[] args) {
+        LocalDateTime from = LocalDate.of(1970, 1, 1).atStartOfDay();
+        LocalDateTime to = LocalDate.now().plusDays(1).atStartOfDay();
+        int top = 10;
+        int capacity = 1024;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--from":
+                        from = LocalDate.parse(args[++i]).atStartOfDay();
+                        break;
+                    case "--to":
+                        to = LocalDate.parse(args[++i]).atStartOfDay();
+                        break;
+                    case "--top":
+                        top = Integer.parseInt(args[++i]);
+                        if (top <= 0) throw new IllegalArgumentException("--top must be positive");
+                        break;
+                    case "--capacity":
+                        capacity = Integer.parseInt(args[++i]);
+                        if (capacity <= 0) throw new IllegalArgumentException("--capacity must be positive");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Usage: java TopParkers [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--top n] [--capacity k]");
+            System.exit(2);
+        }
+
+        System.out.println("=== Frequent parkers for bookings that ended " + from.toLocalDate() + " to "
+            + to.toLocalDate() + " (exclusive) on " + DatabaseManager.storage().name() + " ===");
+        HeavyHitters<String> vehicles = new HeavyHitters<>(capacity);
+        HeavyHitters<String> users = new HeavyHitters<>(capacity);
+        HeavyHitters<Integer> slots = new HeavyHitters<>(capacity);
+        ParkingStorage.BookingChunk chunk = new ParkingStorage.BookingChunk(CHUNK, true);
+        long started = System.nanoTime();
+        long afterId = 0;
+        do {
+            if (!DatabaseManager.fetchBookingChunk(from, to, afterId, chunk)) {
+                System.out.println("✗ Failed to read bookings after " + vehicles.total() + " rows");
+                DatabaseManager.shutdown();
+                System.exit(1);
+            }
+            for (int i = 0; i < chunk.size; i++) {
+                vehicles.offer(chunk.vehicles[i]);
+                users.offer(chunk.users[i]);
+                slots.offer(chunk.slotIds[i]);
+            }
+            if (chunk.size > 0) {
+                afterId = chunk.ids[chunk.size - 1];
+            }
+        } while (chunk.size == chunk.capacity());
+        DatabaseManager.shutdown();
+
+        long count = vehicles.total();
+        System.out.printf("Counted %,d bookings in %.2f s; anything seen more than %,d times is sure to be counted%n",
+            count, (System.nanoTime() - started) / 1e9, count / capacity);
+        report("Vehicle", vehicles.top(top));
+        report("User", users.top(top));
+        report("Slot", slots.top(top));
+    }
+
+    private static <K> void report(String label, List<HeavyHitters.Entry<K>> entries) {
+        System.out.println();
+        String row = "%-24s %12s %10s%n";
+        System.out.printf(row, label, "Bookings", "Over by ≤");
+        for (HeavyHitters.Entry<K> e : entries) {
+            System.out.printf(row, e.key, String.format("%,d", e.count), e.error == 0 ? "exact" : String.format("%,d", e.error));
+        }
+    }
+}
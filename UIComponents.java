@@ -126,6 +126,39 @@ public class UIComponents {
         }
     }
     
+    public static class ProgressDialog extends JDialog {
+        private final JProgressBar bar;
+        
+        public ProgressDialog(Component owner, String message) {
+            super(SwingUtilities.getWindowAncestor(owner), "Please wait", ModalityType.MODELESS);
+            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+            
+            JPanel content = new JPanel(new BorderLayout(0, 12));
+            content.setBackground(CARD_BG);
+            content.setBorder(new EmptyBorder(20, 24, 20, 24));
+            
+            JLabel label = new JLabel(message);
+            label.setFont(new Font("Segoe UI", Font.BOLD, 13));
+            label.setForeground(TEXT_PRIMARY);
+            content.add(label, BorderLayout.NORTH);
+            
+            bar = new JProgressBar();
+            bar.setIndeterminate(true);
+            bar.setPreferredSize(new Dimension(280, 16));
+            content.add(bar, BorderLayout.CENTER);
+            
+            setContentPane(content);
+            pack();
+            setLocationRelativeTo(owner);
+        }
+        
+        public void setProgress(int done, int total) {
+            bar.setIndeterminate(false);
+            bar.setMaximum(total);
+            bar.setValue(done);
+        }
+    }
+    
     public static JPanel createCard() {
         JPanel card = new JPanel();
         card.setBackground(CARD_BG);
@@ -1,7 +1,6 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -13,6 +12,7 @@ public class UserDashboard extends JPanel {
     
     private DefaultListModel<String> slotListModel;
     private JLabel bookingInfo;
+    private JLabel availableTitle;
     private JList<String> slotList;
     
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
@@ -33,6 +33,8 @@ public class UserDashboard extends JPanel {
         
         JPanel center = createContentArea();
         add(center, BorderLayout.CENTER);
+        
+        DataModels.addChangeListener(this::onSlotsChanged);
     }
     
     private JPanel createHeader() {
@@ -92,10 +94,10 @@ public class UserDashboard extends JPanel {
             new EmptyBorder(20, 20, 20, 20)
         ));
         
-        JLabel title = new JLabel("▣ Available Slots");
-        title.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        title.setForeground(UIComponents.TEXT_PRIMARY);
-        panel.add(title, BorderLayout.NORTH);
+        availableTitle = new JLabel("▣ Available Slots");
+        availableTitle.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        availableTitle.setForeground(UIComponents.TEXT_PRIMARY);
+        panel.add(availableTitle, BorderLayout.NORTH);
         
         slotListModel = new DefaultListModel<>();
         slotList = new JList<>(slotListModel);
@@ -169,23 +171,22 @@ public class UserDashboard extends JPanel {
         
         String selectedItem = slotListModel.getElementAt(selectedIndex);
         int slotId = Integer.parseInt(selectedItem.split(" ")[1]);
-        DataModels.ParkingSlot slot = DataModels.getSlots().get(slotId - 1);
-        
-        if (!slot.available) {
-            JOptionPane.showMessageDialog(parent, "Slot is no longer available.");
-            refreshPanel();
-            return;
-        }
-        
-        slot.available = false;
-        slot.bookedBy = DataModels.getCurrentUser();
-        slot.vehicle = DataModels.getCurrentVehicle();
-        slot.inTime = LocalDateTime.now();
-        DataModels.updateSlot(slot);
-        
-        JOptionPane.showMessageDialog(parent, 
-            "Booked slot " + slot.id + " at " + DF.format(slot.inTime));
-        refreshPanel();
+        LocalDateTime inTime = LocalDateTime.now();
+        AsyncData.onEdt(AsyncData.claim(slotId,
+            DataModels.getCurrentUser(), DataModels.getCurrentVehicle(), inTime), result -> {
+            switch (result) {
+                case CLAIMED:
+                    JOptionPane.showMessageDialog(parent, 
+                        "Booked slot " + slotId + " at " + DF.format(inTime));
+                    break;
+                case FAILED:
+                    JOptionPane.showMessageDialog(parent, "Could not book the slot. Please try again.");
+                    break;
+                default:
+                    JOptionPane.showMessageDialog(parent, "Slot is no longer available.");
+                    break;
+            }
+        });
     }
     
     private void leaveSlot() {
@@ -199,25 +200,18 @@ public class UserDashboard extends JPanel {
         }
         
         LocalDateTime outTime = LocalDateTime.now();
-        double cost = calculateCost(userSlot.inTime, outTime);
-        
-        DataModels.addBooking(new DataModels.Booking(
-            userSlot.id, 
-            userSlot.bookedBy, 
-            userSlot.vehicle, 
-            userSlot.inTime, 
-            outTime, 
-            cost));
-        
-        userSlot.available = true;
-        userSlot.bookedBy = null;
-        userSlot.vehicle = null;
-        userSlot.inTime = null;
-        DataModels.updateSlot(userSlot);
-        
-        JOptionPane.showMessageDialog(parent, 
-            String.format("Left slot %d. Total cost: ₹%.2f", userSlot.id, cost));
-        refreshPanel();
+        long cost = TariffEngine.cost(userSlot, outTime);
+        
+        AsyncData.onEdt(AsyncData.release(userSlot, outTime, cost), result -> {
+            if (result == BookingEngine.Result.RELEASED) {
+                JOptionPane.showMessageDialog(parent, 
+                    String.format("Left slot %d. Total cost: %s", userSlot.id, Money.format(cost)));
+            } else if (result == BookingEngine.Result.FAILED) {
+                JOptionPane.showMessageDialog(parent, "Could not release the slot. Please try again.");
+            } else {
+                JOptionPane.showMessageDialog(parent, "Your booking was already closed.");
+            }
+        });
     }
     
     private void calculateCurrentCost() {
@@ -230,27 +224,69 @@ public class UserDashboard extends JPanel {
             return;
         }
         
-        double cost = calculateCost(userSlot.inTime, LocalDateTime.now());
+        long cost = TariffEngine.cost(userSlot, LocalDateTime.now());
         JOptionPane.showMessageDialog(parent, 
-            String.format("Cost so far: ₹%.2f (since %s)", 
-                cost, DF.format(userSlot.inTime)));
-    }
-    
-    private double calculateCost(LocalDateTime in, LocalDateTime out) {
-        if (in == null || out == null) return 0;
-        Duration duration = Duration.between(in, out);
-        double hours = duration.toMinutes() / 60.0;
-        return Math.ceil(hours) * UIComponents.RATE_PER_HOUR;
+            String.format("Cost so far: %s (since %s)", 
+                Money.format(cost), DF.format(userSlot.inTime)));
     }
     
     public void refreshPanel() {
         slotListModel.clear();
-        for (DataModels.ParkingSlot slot : DataModels.getSlots()) {
-            if (slot.available) {
-                slotListModel.addElement("Slot " + slot.id);
-            }
+        for (int id : DataModels.getFreeSlotIds()) {
+            slotListModel.addElement("Slot " + id);
         }
         
+        updateBookingInfo();
+        updateSurge();
+    }
+    
+    /** Shows the surge a booking made now would be charged at; reads counters, not the slots. */
+    private void updateSurge() {
+        int surge = TariffEngine.surgeNow();
+        availableTitle.setText(surge == 100 ? "▣ Available Slots"
+            : "▣ Available Slots · surge " + TariffEngine.surgeLabel(surge));
+    }
+    
+    private void onSlotsChanged(SlotEventBus.Change change) {
+        if (DataModels.getCurrentUser() == null) {
+            return;
+        }
+        for (int id : change.slotIds()) {
+            DataModels.ParkingSlot slot = DataModels.getSlotById(id);
+            int index = indexOfSlot(id);
+            if (slot != null && slot.available) {
+                if (index < 0) {
+                    slotListModel.add(-index - 1, "Slot " + id);
+                }
+            } else if (index >= 0) {
+                slotListModel.remove(index);
+            }
+        }
+        if (change.slotIds().length > 0) {
+            updateBookingInfo();
+            updateSurge();
+        }
+    }
+    
+    /** Binary search of the (id-ordered) slot list; negative insertion point if absent. */
+    private int indexOfSlot(int id) {
+        int low = 0;
+        int high = slotListModel.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = Integer.parseInt(slotListModel.getElementAt(mid).substring("Slot ".length()));
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    private void updateBookingInfo() {
         DataModels.ParkingSlot userSlot = DataModels.findUserBooking(
             DataModels.getCurrentUser(), 
             DataModels.getCurrentVehicle());
@@ -263,8 +299,9 @@ public class UserDashboard extends JPanel {
                 "</div></html>");
         } else {
             bookingInfo.setText(String.format(
-                "<html><b>Slot %d</b><br/>Vehicle: %s<br/>Booked at: %s</html>", 
-                userSlot.id, userSlot.vehicle, DF.format(userSlot.inTime)));
+                "<html><b>Slot %d</b><br/>Vehicle: %s<br/>Booked at: %s%s</html>", 
+                userSlot.id, userSlot.vehicle, DF.format(userSlot.inTime),
+                userSlot.surgePercent == 100 ? "" : "<br/>Surge: " + TariffEngine.surgeLabel(userSlot.surgePercent)));
         }
     }
 }
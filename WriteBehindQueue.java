@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Buffers slot inserts/updates and booking inserts and writes them to the
+ * database in one transaction per flush window. Repeated updates of the same
+ * slot inside a window are coalesced so only the latest state is written.
+ */
+public final class WriteBehindQueue {
+
+    public static final int DEFAULT_MAX_BATCH = Integer.getInteger("parking.writeBehind.maxBatch", 256);
+    public static final long DEFAULT_MAX_DELAY_MS = Long.getLong("parking.writeBehind.maxDelayMs", 50L);
+    private static final long MIN_RETRY_MS = 100L;
+    private static final long MAX_RETRY_MS = 60_000L;
+
+    private final int maxBatch;
+    private final long maxDelayMs;
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+
+    private List<Integer> pendingInserts = new ArrayList<>();
+    private LinkedHashMap<Integer, DataModels.ParkingSlot> pendingSlots = new LinkedHashMap<>();
+    private List<DataModels.Booking> pendingBookings = new ArrayList<>();
+    private long firstPendingAt = 0;
+
+    private Thread flusher;
+    private boolean running = true;
+    /** Flushes that have failed in a row; the flusher backs off while this is non-zero. */
+    private int failures = 0;
+
+    public WriteBehindQueue(int maxBatch, long maxDelayMs) {
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayMs = Math.max(0, maxDelayMs);
+    }
+
+    public void enqueueSlotInsert(int id) {
+        synchronized (lock) {
+            pendingInserts.add(id);
+            pending();
+        }
+    }
+
+    /** Queues the current state of {@code slot}; later calls for the same id replace it. */
+    public void enqueueSlot(DataModels.ParkingSlot slot) {
+        DataModels.ParkingSlot copy = new DataModels.ParkingSlot(slot.id);
+        copy.available = slot.available;
+        copy.bookedBy = slot.bookedBy;
+        copy.vehicle = slot.vehicle;
+        copy.inTime = slot.inTime;
+        copy.surgePercent = slot.surgePercent;
+        synchronized (lock) {
+            pendingSlots.remove(copy.id);
+            pendingSlots.put(copy.id, copy);
+            pending();
+        }
+    }
+
+    public void enqueueBooking(DataModels.Booking booking) {
+        synchronized (lock) {
+            pendingBookings.add(booking);
+            pending();
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return size() == 0;
+        }
+    }
+
+    private int size() {
+        return pendingInserts.size() + pendingSlots.size() + pendingBookings.size();
+    }
+
+    private void pending() {
+        if (!running) {
+            throw new IllegalStateException("Write-behind queue has been shut down");
+        }
+        if (firstPendingAt == 0) {
+            firstPendingAt = System.currentTimeMillis();
+        }
+        if (flusher == null) {
+            flusher = new Thread(this::runFlusher, "parking-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * Writes everything queued so far and returns once it is committed. On
+     * failure the writes stay queued for the next flush and false is returned.
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            List<Integer> inserts;
+            LinkedHashMap<Integer, DataModels.ParkingSlot> slots;
+            List<DataModels.Booking> bookings;
+            synchronized (lock) {
+                if (size() == 0) {
+                    return true;
+                }
+                inserts = pendingInserts;
+                slots = pendingSlots;
+                bookings = pendingBookings;
+                pendingInserts = new ArrayList<>();
+                pendingSlots = new LinkedHashMap<>();
+                pendingBookings = new ArrayList<>();
+                firstPendingAt = 0;
+            }
+
+            if (!DatabaseManager.applyBatch(inserts, slots.values(), bookings)) {
+                requeue(inserts, slots, bookings);
+                return false;
+            }
+            synchronized (lock) {
+                if (failures > 0) {
+                    System.out.println("Write-behind flush succeeded after " + failures + " failed attempt(s).");
+                    failures = 0;
+                    lock.notifyAll();
+                }
+            }
+            return true;
+        }
+    }
+
+    private void requeue(List<Integer> inserts, LinkedHashMap<Integer, DataModels.ParkingSlot> slots,
+                         List<DataModels.Booking> bookings) {
+        synchronized (lock) {
+            inserts.addAll(pendingInserts);
+            pendingInserts = inserts;
+            for (DataModels.ParkingSlot newer : pendingSlots.values()) {
+                slots.remove(newer.id);
+                slots.put(newer.id, newer);
+            }
+            pendingSlots = slots;
+            bookings.addAll(pendingBookings);
+            pendingBookings = bookings;
+            if (firstPendingAt == 0) {
+                firstPendingAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            synchronized (lock) {
+                try {
+                    if (failures > 0) {
+                        long retryAt = System.currentTimeMillis() + retryDelay();
+                        long remaining;
+                        while (running && failures > 0 && (remaining = retryAt - System.currentTimeMillis()) > 0) {
+                            lock.wait(remaining);
+                        }
+                    }
+                    while (running && size() == 0) {
+                        lock.wait();
+                    }
+                    while (running && size() < maxBatch) {
+                        long remaining = firstPendingAt + maxDelayMs - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        lock.wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) {
+                    return;
+                }
+            }
+            if (!flush()) {
+                synchronized (lock) {
+                    failures++;
+                    System.err.println("WARNING: Write-behind flush failed (" + failures + " in a row); "
+                        + size() + " write(s) kept, retrying in " + retryDelay() + " ms.");
+                }
+            }
+        }
+    }
+
+    /** Doubles from the flush window per consecutive failure, up to a minute. */
+    private long retryDelay() {
+        long delay = Math.max(maxDelayMs, MIN_RETRY_MS);
+        for (int i = 1; i < failures && delay < MAX_RETRY_MS; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, MAX_RETRY_MS);
+    }
+
+    /**
+     * Stops the background flusher and writes out whatever is still queued.
+     * Returns false, after reporting what was lost, if that write failed.
+     */
+    public boolean shutdown() {
+        Thread t;
+        synchronized (lock) {
+            running = false;
+            t = flusher;
+            lock.notifyAll();
+        }
+        if (t != null) {
+            try {
+                t.join(maxDelayMs + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (flush()) {
+            return true;
+        }
+        synchronized (lock) {
+            System.err.println("ERROR: Could not write " + pendingInserts.size() + " new slot(s), "
+                + pendingSlots.size() + " slot update(s) and " + pendingBookings.size()
+                + " booking(s) before shutting down; they are lost.");
+        }
+        return false;
+    }
+}
@@ -1,6 +1,6 @@
 @echo off
 echo Compiling Smart Parking System...
-javac -cp ".;sqlite-jdbc-3.46.1.3.jar;slf4j-api-2.0.9.jar;slf4j-simple-2.0.9.jar" DatabaseManager.java DataModels.java UIComponents.java LoginPanel.java AdminDashboard.java UserDashboard.java ParkingSystemMain.java
+javac -cp ".;sqlite-jdbc-3.46.1.3.jar;slf4j-api-2.0.9.jar;slf4j-simple-2.0.9.jar" ConnectionPool.java DatabaseManager.java ParkingStorage.java SqliteStorage.java MemoryStorage.java JournalStorage.java SpoolStorage.java RollupSweep.java OccupancySeries.java HeavyHitters.java DataModels.java SlotStore.java ObjectSlotStore.java PrimitiveSlotStore.java SlotAllocator.java WriteBehindQueue.java BookingEngine.java TariffEngine.java Money.java SlotEventBus.java AsyncData.java UIComponents.java LoginPanel.java AdminDashboard.java UserDashboard.java BookingTableModel.java ChargesBoardModel.java OccupancyChart.java ParkingSystemMain.java
 
 if %ERRORLEVEL% EQU 0 (
     echo Compilation successful!